@@ -0,0 +1,232 @@
+/*
+BasicIO
+
+One entry point for the programs of the lesson. Each demo class still has its
+own main with the file names of the tutorial; BasicIO runs the same programs
+on any files, with a choice of how the I/O is done, so the approaches can be
+compared on the same data without recompiling:
+
+    java -cp target/classes com.mycompany.basicio.BasicIO \
+            copy-bytes --strategy mmap --stats big.bin copy.bin
+
+The strategies are described in IoStrategy; not every program supports all of
+them, and asking for one it does not support is an error rather than a silent
+fallback. --stats prints the elapsed time and throughput on Standard Error, so
+it does not mix with the output of scan, sum and invoice read.
+
+The copy commands can check what they copy. --checksum prints the CRC32C of
+the bytes written, --sha256 adds a SHA-256 tree hash (see CopyChecksum), and
+--verify reads the target back and fails unless it matches:
+
+    java -cp target/classes com.mycompany.basicio.BasicIO \
+            copy-bytes --strategy parallel --sha256 --verify big.bin copy.bin
+*/
+package com.mycompany.basicio;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author david
+ */
+public class BasicIO {
+
+    static final String USAGE = """
+            usage: BasicIO <command> [--strategy NAME] [--stats] <files>
+                   BasicIO copy-* [--checksum] [--sha256] [--verify] ... IN OUT
+
+              copy-bytes IN OUT      stream, buffered, channel, mmap, parallel
+              copy-chars IN OUT      stream, buffered, channel
+              copy-lines IN OUT      stream, buffered, mmap
+              scan IN                stream, buffered, mmap
+              sum IN                 stream, buffered, mmap
+              count-lines IN         stream, buffered, mmap
+              invoice write OUT      stream, buffered
+              invoice read IN        stream, buffered
+              invoice totals IN      buffered
+              invoice encode IN OUT  buffered
+              invoice decode IN OUT  buffered
+
+            The default strategy is buffered. --checksum prints the CRC32C of
+            the copy, --sha256 adds a SHA-256 tree hash, and --verify reads the
+            copy back and checks it.
+            """;
+
+    public static void main(String[] args) throws IOException {
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+    }
+
+    public static void run(String... args) throws IOException {
+        IoStrategy strategy = IoStrategy.BUFFERED;
+        boolean stats = false;
+        boolean checksum = false;
+        boolean sha256 = false;
+        boolean verify = false;
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.equals("--stats")) {
+                stats = true;
+            } else if (arg.equals("--checksum")) {
+                checksum = true;
+            } else if (arg.equals("--sha256")) {
+                sha256 = true;
+            } else if (arg.equals("--verify")) {
+                verify = true;
+            } else if (arg.equals("--strategy")) {
+                if (++i == args.length) {
+                    throw new IllegalArgumentException("--strategy needs a value");
+                }
+                strategy = IoStrategy.parse(args[i]);
+            } else if (arg.startsWith("--strategy=")) {
+                strategy = IoStrategy.parse(arg.substring("--strategy=".length()));
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                operands.add(arg);
+            }
+        }
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("No command given");
+        }
+        String command = operands.remove(0);
+        if (command.equals("invoice") && !operands.isEmpty()) {
+            /* concat rather than +, which bootstraps StringConcatFactory */
+            command = command.concat(" ").concat(operands.remove(0));
+        }
+
+        CopyChecksum sums = null;
+        if (checksum || sha256 || verify) {
+            if (!command.startsWith("copy-")) {
+                throw new IllegalArgumentException(
+                        "--checksum, --sha256 and --verify only apply to the copy commands");
+            }
+            sums = new CopyChecksum(sha256);
+        }
+
+        long start = System.nanoTime();
+        Path measured;
+        switch (command) {
+            case "copy-bytes" -> {
+                expect(command, operands, 2);
+                measured = Path.of(operands.get(0));
+                CopyEngine.copy(measured, Path.of(operands.get(1)), strategy, sums);
+            }
+            case "copy-chars" -> {
+                expect(command, operands, 2);
+                measured = Path.of(operands.get(0));
+                TextCommands.copyChars(measured, Path.of(operands.get(1)), strategy, sums);
+            }
+            case "copy-lines" -> {
+                expect(command, operands, 2);
+                measured = Path.of(operands.get(0));
+                TextCommands.copyLines(measured, Path.of(operands.get(1)), strategy, sums);
+            }
+            case "scan" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                TextCommands.scan(measured, System.out, strategy);
+            }
+            case "sum" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                System.out.println(TextCommands.sum(measured, strategy));
+            }
+            case "count-lines" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                System.out.println(TextCommands.countLines(measured, strategy));
+            }
+            case "invoice write" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                InvoiceCommands.write(measured, strategy);
+            }
+            case "invoice read" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                InvoiceCommands.read(measured, System.out, strategy);
+            }
+            case "invoice totals" -> {
+                expect(command, operands, 1);
+                measured = Path.of(operands.get(0));
+                InvoiceCommands.totals(measured, System.out, strategy);
+            }
+            case "invoice encode" -> {
+                expect(command, operands, 2);
+                measured = Path.of(operands.get(0));
+                InvoiceCommands.encode(measured, Path.of(operands.get(1)), strategy);
+            }
+            case "invoice decode" -> {
+                expect(command, operands, 2);
+                measured = Path.of(operands.get(0));
+                InvoiceCommands.decode(measured, Path.of(operands.get(1)), strategy);
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        if (sums != null) {
+            Path target = Path.of(operands.get(1));
+            if (verify) {
+                sums.verify(target);
+            }
+            System.out.println(sums.report(target));
+        }
+        if (stats) {
+            printStats(command, strategy, Files.size(measured), System.nanoTime() - start);
+        }
+    }
+
+    /*
+    For example:
+
+        copy-bytes (mmap): 1073741824 bytes in 412.907 ms, 2600.40 MB/s
+
+    where a MB is a million bytes. Copies and reads count the bytes of the
+    input file, invoice write the bytes of the file it wrote.
+    */
+    static void printStats(String command, IoStrategy strategy, long bytes, long nanos) {
+        var text = new NumberText();
+        byte[] buf = new byte[128];
+        int n = text.writeAscii(command, buf, 0);
+        n = text.writeAscii(" (", buf, n);
+        n = text.writeAscii(strategy.toString(), buf, n);
+        n = text.writeAscii("): ", buf, n);
+        n = text.writeLong(bytes, buf, n);
+        n = text.writeAscii(" bytes in ", buf, n);
+        n = text.writeFixed(nanos / 1e6, 3, buf, n);
+        n = text.writeAscii(" ms, ", buf, n);
+        n = text.writeFixed(nanos == 0 ? 0 : bytes * 1e3 / nanos, 2, buf, n);
+        n = text.writeAscii(" MB/s", buf, n);
+        n = text.writeAscii(System.lineSeparator(), buf, n);
+        System.err.write(buf, 0, n);
+        System.err.flush();
+    }
+
+    static IllegalArgumentException unsupported(String command, IoStrategy strategy,
+            IoStrategy... supported) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(command).append(" does not support --strategy ").append(strategy)
+                .append(" (use ");
+        for (int i = 0; i < supported.length; ++i) {
+            sb.append(i == 0 ? "" : ", ").append(supported[i]);
+        }
+        return new IllegalArgumentException(sb.append(')').toString());
+    }
+
+    private static void expect(String command, List<String> operands, int count) {
+        if (operands.size() != count) {
+            throw new IllegalArgumentException(command + " takes " + count
+                    + (count == 1 ? " file" : " files") + ", got " + operands.size());
+        }
+    }
+}
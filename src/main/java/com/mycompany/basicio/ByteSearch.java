@@ -0,0 +1,294 @@
+/*
+Searching Eight Bytes at a Time
+
+CopyLines and ScanXan spend most of their time asking, byte after byte, "is
+this a line terminator?" or "is this white space?". ByteSearch asks the same
+question of eight bytes at once, with ordinary arithmetic on a long. This is
+SWAR, SIMD within a register. A word is read from the buffer, and a few
+additions, ORs and ANDs set the high bit of exactly those bytes of the word
+that belong to the set. The number of trailing zero bits of the result then
+gives the first match, Long.bitCount the number of matches, and a word
+without any match is skipped whole. The bit tricks are the ones described in
+"Bit Twiddling Hacks" by Sean Eron Anderson.
+
+Two tests are used, both exact for every byte value, so no byte ever needs to
+be checked again one at a time:
+
+    equal to b     the bytes of the word XOR b, then a test for zero bytes
+    below n        for ranges of ASCII bytes: lo <= byte <= hi is
+                   "below hi + 1" and not "below lo"
+
+A set is made of whichever is cheaper: a test per byte for a few scattered
+bytes, a pair of range tests for runs such as the white space bytes 0x09 to
+0x0D and 0x1C to 0x20. Up to three single bytes and two ranges are held in
+fields and tested without a loop, unused ones repeating a used one, which
+changes nothing in an OR; larger sets go through arrays.
+
+The words are read in little-endian order, the first byte of the word in its
+lowest bits, whatever the order of the buffer, so that trailing zeros count
+forward. Mapped buffers are big-endian, and for them the bytes of each word
+are reversed, which the JIT compiles to a single instruction.
+*/
+package com.mycompany.basicio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ *
+ * @author david
+ */
+public final class ByteSearch {
+
+    static final long ONES = 0x0101010101010101L;
+    static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    static final long HIGH = 0x8080808080808080L;
+
+    public static final ByteSearch NEWLINE = of("\n");
+    public static final ByteSearch LINE_ENDS = of("\n\r");
+    /* the bytes for which Character.isWhitespace is true, as Scanner uses */
+    public static final ByteSearch WHITESPACE = of("\t\n\u000B\f\r\u001C\u001D\u001E\u001F ");
+
+    private final boolean[] member = new boolean[256];
+    private final boolean hasEqual;
+    private final long eq0;
+    private final long eq1;
+    private final long eq2;
+    /* ranges as the addends of below(), for their bounds */
+    private final boolean hasRange;
+    private final long lo0;
+    private final long hi0;
+    private final long lo1;
+    private final long hi1;
+    /* the tests beyond those, or null */
+    private final long[] moreEqual;
+    private final long[] moreLo;
+    private final long[] moreHi;
+
+    public ByteSearch(byte... set) {
+        for (byte b : set) {
+            member[b & 0xFF] = true;
+        }
+        int equals = 0;
+        int ranges = 0;
+        long[] eq = new long[256];
+        long[] lo = new long[128];
+        long[] hi = new long[128];
+        for (int b = 0; b < 256; ++b) {
+            if (!member[b]) {
+                continue;
+            }
+            int end = b;
+            while (end + 1 < 128 && member[end + 1]) {
+                ++end;
+            }
+            if (end > b) {
+                lo[ranges] = addend(b);
+                hi[ranges++] = addend(end + 1);
+                b = end;
+            } else {
+                eq[equals++] = b * ONES;
+            }
+        }
+        hasEqual = equals > 0;
+        eq0 = eq[0];
+        eq1 = eq[equals > 1 ? 1 : 0];
+        eq2 = eq[equals > 2 ? 2 : 0];
+        hasRange = ranges > 0;
+        lo0 = lo[0];
+        hi0 = hi[0];
+        lo1 = lo[ranges > 1 ? 1 : 0];
+        hi1 = hi[ranges > 1 ? 1 : 0];
+        boolean more = equals > 3 || ranges > 2;
+        moreEqual = more ? Arrays.copyOfRange(eq, 3, Math.max(3, equals)) : null;
+        moreLo = more ? Arrays.copyOfRange(lo, 2, Math.max(2, ranges)) : null;
+        moreHi = more ? Arrays.copyOfRange(hi, 2, Math.max(2, ranges)) : null;
+    }
+
+    /* A set of the characters of a string, each below 256. */
+    public static ByteSearch of(String chars) {
+        byte[] set = new byte[chars.length()];
+        for (int i = 0; i < set.length; ++i) {
+            char c = chars.charAt(i);
+            if (c > 0xFF) {
+                throw new IllegalArgumentException("not a byte: " + (int) c);
+            }
+            set[i] = (byte) c;
+        }
+        return new ByteSearch(set);
+    }
+
+    public boolean contains(byte b) {
+        return member[b & 0xFF];
+    }
+
+    /* The index of the first byte of the set in [from, to), or -1. */
+    public int indexIn(ByteBuffer buf, int from, int to) {
+        boolean swap = buf.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        // one word first, for short tokens and lines
+        if (i + 8 <= to) {
+            long m = members(word(buf, i, swap));
+            if (m != 0) {
+                return i + first(m);
+            }
+            i += 8;
+        }
+        // then four words per round while nothing is found
+        for (; i + 32 <= to; i += 32) {
+            long m0 = members(word(buf, i, swap));
+            long m1 = members(word(buf, i + 8, swap));
+            long m2 = members(word(buf, i + 16, swap));
+            long m3 = members(word(buf, i + 24, swap));
+            if ((m0 | m1 | m2 | m3) != 0) {
+                return m0 != 0 ? i + first(m0)
+                        : m1 != 0 ? i + 8 + first(m1)
+                        : m2 != 0 ? i + 16 + first(m2)
+                        : i + 24 + first(m3);
+            }
+        }
+        for (; i + 8 <= to; i += 8) {
+            long m = members(word(buf, i, swap));
+            if (m != 0) {
+                return i + first(m);
+            }
+        }
+        for (; i < to; ++i) {
+            if (member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* The index of the first byte not in the set in [from, to), or -1. */
+    public int indexNotIn(ByteBuffer buf, int from, int to) {
+        boolean swap = buf.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long m = ~members(word(buf, i, swap)) & HIGH;
+            if (m != 0) {
+                return i + first(m);
+            }
+        }
+        for (; i < to; ++i) {
+            if (!member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* The index of the last byte of the set in [from, to), or -1. */
+    public int lastIndexIn(ByteBuffer buf, int from, int to) {
+        boolean swap = buf.order() == ByteOrder.BIG_ENDIAN;
+        int i = to - 8;
+        for (; i >= from; i -= 8) {
+            long m = members(word(buf, i, swap));
+            if (m != 0) {
+                return i + 7 - (Long.numberOfLeadingZeros(m) >>> 3);
+            }
+        }
+        for (i += 7; i >= from; --i) {
+            if (member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* The number of bytes of the set in [from, to). */
+    public long count(ByteBuffer buf, int from, int to) {
+        boolean swap = buf.order() == ByteOrder.BIG_ENDIAN;
+        long n = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            n += Long.bitCount(members(word(buf, i, swap)));
+        }
+        for (; i < to; ++i) {
+            if (member[buf.get(i) & 0xFF]) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    /*
+    The number of line terminators in [from, to), counted like readLine
+    counts them: \n, \r and \r\n each end one line. A \r\n split between two
+    calls counts twice, so callers keep it in one piece.
+    */
+    public static long countLines(ByteBuffer buf, int from, int to) {
+        boolean swap = buf.order() == ByteOrder.BIG_ENDIAN;
+        long n = 0;
+        long cr = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long w = word(buf, i, swap);
+            long lf = zeroBytes(w ^ ('\n' * ONES));
+            long carry = cr >>> 63;
+            cr = zeroBytes(w ^ ('\r' * ONES));
+            // a \r followed by \n, in this word or across the last two
+            long pairs = (cr << 8) & lf;
+            n += Long.bitCount(lf) + Long.bitCount(cr) - Long.bitCount(pairs)
+                    - (carry & lf >>> 7);
+        }
+        byte prev = i > from && cr < 0 ? (byte) '\r' : 0;
+        for (; i < to; ++i) {
+            byte b = buf.get(i);
+            if (b == '\r' || (b == '\n' && prev != '\r')) {
+                ++n;
+            }
+            prev = b;
+        }
+        return n;
+    }
+
+    private long members(long w) {
+        long m = 0;
+        if (hasEqual) {
+            m = zeroBytes(w ^ eq0) | zeroBytes(w ^ eq1) | zeroBytes(w ^ eq2);
+        }
+        if (hasRange) {
+            m |= below(w, hi0) & ~below(w, lo0) | below(w, hi1) & ~below(w, lo1);
+        }
+        if (moreEqual != null) {
+            for (long p : moreEqual) {
+                m |= zeroBytes(w ^ p);
+            }
+            for (int r = 0; r < moreLo.length; ++r) {
+                m |= below(w, moreHi[r]) & ~below(w, moreLo[r]);
+            }
+        }
+        return m;
+    }
+
+    /* the high bit set in each byte of w that is zero, and only in those */
+    static long zeroBytes(long w) {
+        return ~(((w & LOW7) + LOW7) | w | LOW7);
+    }
+
+    /*
+    The high bit set in each byte of w below n, given addend(n), for
+    0 <= n <= 128. Adding 0x80 - n to the low seven bits of a byte sets its
+    high bit exactly when they are n or more, and never carries into the next
+    byte; bytes of 0x80 and above have their high bit set already.
+    */
+    static long below(long w, long addend) {
+        return ~(((w & LOW7) + addend) | w) & HIGH;
+    }
+
+    static long addend(int n) {
+        return (0x80 - n) * ONES;
+    }
+
+    private static int first(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private static long word(ByteBuffer buf, int i, boolean swap) {
+        long w = buf.getLong(i);
+        return swap ? Long.reverseBytes(w) : w;
+    }
+}
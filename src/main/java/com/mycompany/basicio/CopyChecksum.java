@@ -0,0 +1,379 @@
+/*
+Checksums While Copying
+
+A copy can be checked without reading the data a second time: the checksum is
+computed from the bytes as they pass through the copy. CopyChecksum takes
+those bytes and keeps two checksums of them:
+
+    CRC32C       always. java.util.zip.CRC32C is computed with the CPU's CRC
+                 instructions, so it costs next to nothing beside the I/O.
+    SHA-256      optionally, as a tree hash: the data is cut into chunks of
+                 CHUNK bytes, each chunk is hashed on its own, and the result
+                 is the SHA-256 of the chunk digests one after the other.
+
+The chunks are the same ones the PARALLEL strategy copies, so each thread can
+hash its own chunk, and the results are merged in file order. CRC32C values of
+consecutive pieces are combined with crc32_combine from zlib, which appends
+the CRC of the second piece to the first in O(log n) steps. Every strategy
+therefore reports the same two values for the same bytes. Note that the tree
+hash is not the plain SHA-256 of the file that sha256sum prints.
+
+verify reads the written file back and compares checksums. Where the JDK and
+the file system allow it, it reads with O_DIRECT (the DIRECT option of the
+JDK-specific com.sun.nio.file.ExtendedOpenOption), which bypasses the page
+cache: Linux writes the dirty pages of the file out first, so the bytes
+checked are the bytes that reached the device rather than the cached copy of
+what was written. Elsewhere, on tmpfs for one, it is a page cache read.
+*/
+package com.mycompany.basicio;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+/**
+ *
+ * @author david
+ */
+public class CopyChecksum {
+
+    static final long CHUNK = CopyEngine.PARALLEL_CHUNK;
+
+    // CRC32C polynomial, bit-reversed
+    static final int POLY = 0x82F63B78;
+
+    /* CRC of the pieces appended so far, and the running CRC after them */
+    private int prefixCrc;
+    private final CRC32C crc = new CRC32C();
+    private long crcLength;
+    private long length;
+
+    private final MessageDigest leaf;
+    private final MessageDigest root;
+    private long leafLength;
+    private byte[] lastLeaf;
+    private boolean ended;
+    private byte[] sha256;
+
+    public CopyChecksum(boolean sha256) {
+        if (sha256) {
+            try {
+                leaf = MessageDigest.getInstance("SHA-256");
+                root = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        } else {
+            leaf = null;
+            root = null;
+        }
+    }
+
+    public boolean hasSha256() {
+        return leaf != null;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public void update(int b) {
+        crc.update(b);
+        ++crcLength;
+        ++length;
+        if (leaf != null) {
+            leaf.update((byte) b);
+            if (++leafLength == CHUNK) {
+                closeLeaf();
+            }
+        }
+    }
+
+    public void update(byte[] b, int off, int len) {
+        crc.update(b, off, len);
+        crcLength += len;
+        length += len;
+        while (leaf != null && len > 0) {
+            int n = (int) Math.min(len, CHUNK - leafLength);
+            leaf.update(b, off, n);
+            off += n;
+            len -= n;
+            if ((leafLength += n) == CHUNK) {
+                closeLeaf();
+            }
+        }
+    }
+
+    /* Consumes the remaining bytes of buf. */
+    public void update(ByteBuffer buf) {
+        int len = buf.remaining();
+        crc.update(buf.duplicate());
+        crcLength += len;
+        length += len;
+        if (leaf == null) {
+            buf.position(buf.limit());
+            return;
+        }
+        int limit = buf.limit();
+        while (buf.hasRemaining()) {
+            int n = (int) Math.min(buf.remaining(), CHUNK - leafLength);
+            buf.limit(buf.position() + n);
+            leaf.update(buf);
+            buf.limit(limit);
+            if ((leafLength += n) == CHUNK) {
+                closeLeaf();
+            }
+        }
+    }
+
+    /*
+    Appends the checksums of the next piece of the data, computed separately,
+    for example by another thread. With SHA-256 the piece has to be one
+    chunk, or the last part of the data, and this one has to end on a chunk
+    boundary, so that the leaves of the tree stay the same.
+    */
+    public void append(CopyChecksum next) {
+        if (leaf != null && (leafLength != 0 || ended || next.length > CHUNK)) {
+            throw new IllegalArgumentException("SHA-256 pieces must be whole chunks");
+        }
+        prefixCrc = combine(crc32c(), next.crc32c(), next.length);
+        crc.reset();
+        crcLength = 0;
+        length += next.length;
+        if (leaf != null && next.length > 0) {
+            root.update(next.sha256Leaf());
+            // after a short piece, the last of the data, nothing may follow
+            ended = next.length < CHUNK;
+        }
+    }
+
+    /* The digest of the single chunk a piece holds. */
+    private byte[] sha256Leaf() {
+        if (leafLength > 0) {
+            closeLeaf();
+        }
+        return lastLeaf;
+    }
+
+    private void closeLeaf() {
+        lastLeaf = leaf.digest();
+        root.update(lastLeaf);
+        leafLength = 0;
+    }
+
+    public int crc32c() {
+        return combine(prefixCrc, (int) crc.getValue(), crcLength);
+    }
+
+    /*
+    The tree hash of the data, or null without SHA-256. The first call ends
+    the data: nothing may be added after it.
+    */
+    public byte[] sha256() {
+        if (leaf == null) {
+            return null;
+        }
+        if (sha256 == null) {
+            if (leafLength > 0) {
+                closeLeaf();
+            }
+            sha256 = root.digest();
+        }
+        return sha256.clone();
+    }
+
+    /*
+    Returns "crc32c=1a2b3c4d sha256-tree=<64 hex digits> <path>", without the
+    tree hash when it was not asked for.
+    */
+    public String report(Path path) {
+        HexFormat hex = HexFormat.of();
+        StringBuilder sb = new StringBuilder("crc32c=").append(hex.toHexDigits(crc32c()));
+        byte[] sha = sha256();
+        if (sha != null) {
+            sb.append(" sha256-tree=").append(hex.formatHex(sha));
+        }
+        return sb.append(' ').append(path).toString();
+    }
+
+    /*
+    crc32_combine from zlib: the CRC of A followed by B from the CRCs of A
+    and B and the length of B, by applying the operator for lenB zero bytes
+    to crcA, built up by repeated squaring of the one-zero-bit operator.
+    */
+    static int combine(int crcA, int crcB, long lenB) {
+        if (lenB <= 0) {
+            return crcA;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        odd[0] = POLY;
+        int row = 1;
+        for (int n = 1; n < 32; ++n) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);  // two zero bits
+        square(odd, even);  // four zero bits
+        do {
+            square(even, odd);
+            if ((lenB & 1) != 0) {
+                crcA = times(even, crcA);
+            }
+            lenB >>= 1;
+            if (lenB == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((lenB & 1) != 0) {
+                crcA = times(odd, crcA);
+            }
+            lenB >>= 1;
+        } while (lenB != 0);
+        return crcA ^ crcB;
+    }
+
+    private static int times(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; ++i, vec >>>= 1) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] mat) {
+        for (int n = 0; n < 32; ++n) {
+            square[n] = times(mat, mat[n]);
+        }
+    }
+
+    /* An OutputStream that checksums everything written through it. */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                update(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                update(b, off, len);
+            }
+        };
+    }
+
+    /* A channel that checksums everything written through it. */
+    public WritableByteChannel wrap(WritableByteChannel out) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                ByteBuffer written = src.duplicate();
+                int n = out.write(src);
+                update(written.limit(written.position() + n));
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return out.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    /* Reads a file back and checks it against these checksums. */
+    public void verify(Path target) throws IOException {
+        CopyChecksum written = readBack(target, hasSha256());
+        if (written.length != length || written.crc32c() != crc32c()
+                || !Arrays.equals(written.sha256(), sha256())) {
+            throw new IOException("verification failed: " + target
+                    + " does not match the data copied");
+        }
+    }
+
+    static CopyChecksum readBack(Path target, boolean sha256) throws IOException {
+        CopyChecksum sums = new CopyChecksum(sha256);
+        int align = directAlignment(target);
+        try (FileChannel plain = FileChannel.open(target, StandardOpenOption.READ);
+                FileChannel direct = align > 1 ? openDirect(target) : null) {
+            int size = Math.max(align, 1 << 20) / align * align;
+            ByteBuffer buf = ByteBuffer.allocateDirect(size + align).alignedSlice(align);
+            long pos = 0;
+            while (true) {
+                buf.clear().limit(size);
+                /* A direct read has to start on a block boundary, so after a
+                short one whatever follows comes through the page cache. */
+                int n = direct != null && pos % align == 0
+                        ? direct.read(buf, pos) : plain.read(buf, pos);
+                if (n < 0) {
+                    break;
+                }
+                pos += n;
+                buf.flip();
+                sums.update(buf);
+            }
+        }
+        return sums;
+    }
+
+    /* The block size O_DIRECT reads need for target, or 1 without O_DIRECT. */
+    private static int directAlignment(Path target) {
+        if (directOption() == null) {
+            return 1;
+        }
+        try {
+            return (int) Files.getFileStore(target).getBlockSize();
+        } catch (UnsupportedOperationException | IOException e) {
+            return 1;
+        }
+    }
+
+    private static FileChannel openDirect(Path target) {
+        try {
+            return FileChannel.open(target, StandardOpenOption.READ, directOption());
+        } catch (UnsupportedOperationException | IOException e) {
+            // tmpfs and some other file systems refuse O_DIRECT
+            return null;
+        }
+    }
+
+    /*
+    ExtendedOpenOption.DIRECT, or null. It is looked up by name because
+    com.sun.nio.file belongs to the JDK rather than to Java SE, and javac
+    warns about every use of it.
+    */
+    private static OpenOption directOption() {
+        try {
+            Class<?> type = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object option : type.getEnumConstants()) {
+                if (((Enum<?>) option).name().equals("DIRECT")) {
+                    return (OpenOption) option;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            // a runtime without the jdk.unsupported module
+        }
+        return null;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+Copying a File, Five Ways
+
+CopyBytes copies xanadu.txt one byte at a time: every read() and write() is a
+call into the operating system. That is the STREAM strategy here. The others
+are the improvements the rest of the lesson introduces:
+
+    BUFFERED   BufferedInputStream and BufferedOutputStream, moving a whole
+               array per call instead of a single byte.
+    CHANNEL    FileChannel.transferTo, which lets the operating system copy
+               between the files without passing the bytes through the heap.
+    MMAP       the source mapped into memory and put into a mapped target.
+               A mapping is limited to 2 GB, so large files are mapped one
+               window at a time.
+    PARALLEL   the file split into chunks that a pool of threads copies with
+               positional reads and writes on shared channels.
+
+Given a CopyChecksum, each strategy also hashes the bytes as it copies them,
+so a checked copy reads its source only once. CHANNEL is the exception to the
+zero-copy rule: the bytes have to pass through the program to be hashed, so
+with a checksum it reads them into a direct buffer and writes them from there
+instead of calling transferTo. PARALLEL hashes every chunk in the thread that
+copies it and merges the results in file order.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * @author david
+ */
+public class CopyEngine {
+
+    static final int BUFFER_SIZE = 1 << 16;
+    static final long MAP_WINDOW = 1L << 30;
+    static final long PARALLEL_CHUNK = 8L << 20;
+
+    public static void copy(Path source, Path target, IoStrategy strategy) throws IOException {
+        copy(source, target, strategy, null);
+    }
+
+    /* Copies and adds the bytes copied to sums, unless it is null. */
+    public static void copy(Path source, Path target, IoStrategy strategy, CopyChecksum sums)
+            throws IOException {
+        switch (strategy) {
+            case STREAM -> copyStream(source, target, sums);
+            case BUFFERED -> copyBuffered(source, target, sums);
+            case CHANNEL -> copyChannel(source, target, sums);
+            case MMAP -> copyMapped(source, target, sums);
+            case PARALLEL -> copyParallel(source, target, sums);
+        }
+    }
+
+    static void copyStream(Path source, Path target, CopyChecksum sums) throws IOException {
+        try (InputStream in = new FileInputStream(source.toFile());
+                OutputStream file = new FileOutputStream(target.toFile());
+                OutputStream out = sums == null ? file : sums.wrap(file)) {
+            int c;
+            while ((c = in.read()) != -1) {
+                out.write(c);
+            }
+        }
+    }
+
+    static void copyBuffered(Path source, Path target, CopyChecksum sums) throws IOException {
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(source.toFile()), BUFFER_SIZE);
+                OutputStream out = new BufferedOutputStream(
+                        new FileOutputStream(target.toFile()), BUFFER_SIZE)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+                if (sums != null) {
+                    sums.update(buf, 0, n);
+                }
+            }
+        }
+    }
+
+    static void copyChannel(Path source, Path target, CopyChecksum sums) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = openTarget(target)) {
+            if (sums != null) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (in.read(buf.clear()) != -1) {
+                    buf.flip();
+                    sums.update(buf.duplicate());
+                    while (buf.hasRemaining()) {
+                        out.write(buf);
+                    }
+                }
+                return;
+            }
+            long size = in.size();
+            long pos = 0;
+            /* transferTo may move fewer bytes than asked for, so loop */
+            while (pos < size) {
+                pos += in.transferTo(pos, size - pos, out);
+            }
+        }
+    }
+
+    static void copyMapped(Path source, Path target, CopyChecksum sums) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                long len = Math.min(MAP_WINDOW, size - pos);
+                MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, pos, len);
+                if (sums != null) {
+                    sums.update(src.duplicate());
+                }
+                dst.put(src);
+            }
+        }
+    }
+
+    static void copyParallel(Path source, Path target, CopyChecksum sums) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = openTarget(target)) {
+            long size = in.size();
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors());
+            try {
+                List<Future<CopyChecksum>> chunks = new ArrayList<>();
+                for (long pos = 0; pos < size; pos += PARALLEL_CHUNK) {
+                    long start = pos;
+                    long len = Math.min(PARALLEL_CHUNK, size - pos);
+                    CopyChecksum chunkSums = sums == null ? null : new CopyChecksum(sums.hasSha256());
+                    chunks.add(pool.submit(() -> copyRange(in, out, start, len, chunkSums)));
+                }
+                for (Future<CopyChecksum> chunk : chunks) {
+                    CopyChecksum chunkSums = chunk.get();
+                    if (sums != null) {
+                        sums.append(chunkSums);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("copy interrupted");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /*
+    Positional reads and writes do not move the channel's position, so any
+    number of threads can share the two channels. Returns sums, with the
+    bytes of the range added.
+    */
+    static CopyChecksum copyRange(FileChannel in, FileChannel out, long start, long len,
+            CopyChecksum sums) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect((int) Math.min(len, BUFFER_SIZE));
+        long pos = start;
+        long end = start + len;
+        while (pos < end) {
+            buf.clear().limit((int) Math.min(buf.capacity(), end - pos));
+            int n = in.read(buf, pos);
+            if (n < 0) {
+                throw new IOException("file shrank while copying");
+            }
+            buf.flip();
+            if (sums != null) {
+                sums.update(buf.duplicate());
+            }
+            long at = pos;
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+            pos += n;
+        }
+        return sums;
+    }
+
+    static FileChannel openTarget(Path target) throws IOException {
+        return FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+Dictionary-Encoded Invoice Files
+
+In the format of DataStreamsDemo every record carries its description in full,
+written by writeUTF: "Java T-shirt" costs 14 bytes each time it is ordered,
+and every readUTF of it creates a new String. Real invoices have a few
+thousand product names repeated across millions of records.
+
+This variant writes each distinct description once, in a table at the start
+of the file, and stores a small index into that table in every record:
+
+    int       magic, the bytes "INVD"
+    byte      format version, 1
+    varint    number of descriptions
+    UTF       each description, as written by writeUTF
+    then, until the end of the file, records of
+    double    price
+    int       units
+    varint    index of the description in the table
+
+A varint is an unsigned int in 7-bit groups, low group first, with the high
+bit of each byte set when another byte follows: indexes below 128 take one
+byte, below 16384 two.
+
+A reader creates one String per entry of the table and hands that same
+instance to every record that refers to it, so reading allocates nothing per
+description, and all rows of one product share one String.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ *
+ * @author david
+ */
+public class DictionaryInvoiceFormat {
+
+    static final int MAGIC = 0x494E5644;
+    static final int VERSION = 1;
+
+    public interface RecordVisitor {
+
+        void record(double price, int units, String desc) throws IOException;
+    }
+
+    /* Whether a file starts with the magic number of this format. */
+    public static boolean isDictionaryFile(Path source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(source.toFile()))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    public static void write(InvoiceTable table, Path target) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(target.toFile()), CopyEngine.BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarint(out, table.descriptionCount());
+            for (int id = 0; id < table.descriptionCount(); ++id) {
+                out.writeUTF(table.dictionaryEntry(id));
+            }
+            for (long row = 0; row < table.size(); ++row) {
+                out.writeDouble(table.price(row));
+                out.writeInt(table.units(row));
+                writeVarint(out, table.descId(row));
+            }
+        }
+    }
+
+    public static InvoiceTable read(Path source) throws IOException {
+        InvoiceTable table = new InvoiceTable();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(source.toFile()), CopyEngine.BUFFER_SIZE))) {
+            String[] descs = readHeader(in);
+            for (int i = 0; i < descs.length; ++i) {
+                if (table.idOf(descs[i]) != i) {
+                    throw new IOException("description table repeats " + descs[i]);
+                }
+            }
+            while (true) {
+                double price;
+                try {
+                    price = in.readDouble();
+                } catch (EOFException e) {
+                    break;
+                }
+                int unit = in.readInt();
+                table.append(price, unit, checkId(readVarint(in), descs));
+            }
+        }
+        return table;
+    }
+
+    /*
+    Reads every record of a file from the start, magic number included, and
+    passes each to the visitor with the shared description instance.
+    */
+    public static void read(InputStream stream, RecordVisitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        String[] descs = readHeader(in);
+        while (true) {
+            double price;
+            try {
+                price = in.readDouble();
+            } catch (EOFException e) {
+                break;
+            }
+            int unit = in.readInt();
+            visitor.record(price, unit, descs[checkId(readVarint(in), descs)]);
+        }
+    }
+
+    private static String[] readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a dictionary-encoded invoice file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported invoice file version " + version);
+        }
+        String[] descs = new String[readVarint(in)];
+        for (int i = 0; i < descs.length; ++i) {
+            descs[i] = in.readUTF();
+        }
+        return descs;
+    }
+
+    private static int checkId(int id, String[] descs) throws IOException {
+        if (id >= descs.length) {
+            throw new IOException("description index " + id + " out of range");
+        }
+        return id;
+    }
+
+    static void writeVarint(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            if (shift == 28 && (b & 0x70) != 0) {
+                // bits beyond the 32 of an int would be shifted out unseen
+                break;
+            }
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (v < 0) {
+                    break;
+                }
+                return v;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
@@ -45,6 +45,19 @@ public class FormatRoot1 {
         i = 5;
         r = Math.sqrt(i);
         System.out.println("The square root of " + i + " is " + r + ".");
+
+        /* The same line once more, rendered by NumberText straight into a 
+        byte array with no intermediate Strings, then written in one call. */
+        var text = new NumberText();
+        byte[] buf = new byte[80];
+        int n = text.writeAscii("The square root of ", buf, 0);
+        n = text.writeInt(i, buf, n);
+        n = text.writeAscii(" is ", buf, n);
+        n = text.writeDouble(r, buf, n);
+        n = text.writeAscii(".", buf, n);
+        n = text.writeAscii(System.lineSeparator(), buf, n);
+        System.out.write(buf, 0, n);
+        System.out.flush();
     }
 }
 /*
@@ -52,6 +65,7 @@ Here is the output of Root:
 
     The square root of 2 is 1.4142135623730951.
     The square root of 5 is 2.23606797749979.
+    The square root of 5 is 2.23606797749979.
 
 The i and r variables are formatted twice: the first time using code in an 
 overload of print, the second time by conversion code automatically generated by 
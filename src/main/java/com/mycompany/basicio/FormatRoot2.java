@@ -20,12 +20,33 @@ public class FormatRoot2 {
         
         System.out.format("The square root of %d is %f.%n", i, r);
         System.out.format("%f, %1$+020.10f %n", Math.PI);
+
+        /* NumberText.writeFixed follows the same rounding as %.Nf, so both 
+        lines can be rendered without a Formatter as well. */
+        var text = new NumberText();
+        byte[] buf = new byte[80];
+        int n = text.writeAscii("The square root of ", buf, 0);
+        n = text.writeInt(i, buf, n);
+        n = text.writeAscii(" is ", buf, n);
+        n = text.writeFixed(r, 6, buf, n);
+        n = text.writeAscii(".", buf, n);
+        n = text.writeAscii(System.lineSeparator(), buf, n);
+        n = text.writeFixed(Math.PI, 6, buf, n);
+        n = text.writeAscii(", ", buf, n);
+        n = text.writeFixed(Math.PI, 10, true, 20, buf, n);
+        n = text.writeAscii(" ", buf, n);
+        n = text.writeAscii(System.lineSeparator(), buf, n);
+        System.out.write(buf, 0, n);
+        System.out.flush();
     }
 }
 /*
-Here is the output:
+Here is the output, each line once from format and once from NumberText:
 
     The square root of 2 is 1.414214.
+    3.141593, +00000003.1415926536 
+    The square root of 2 is 1.414214.
+    3.141593, +00000003.1415926536 
 
 Like the three used in this example, all format specifiers begin with a % and 
 end with a 1- or 2-character conversion that specifies the kind of formatted 
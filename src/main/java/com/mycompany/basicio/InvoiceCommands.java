@@ -0,0 +1,166 @@
+/*
+The two halves of DataStreamsDemo as separate commands: "invoice write" writes
+the sample records to a file, "invoice read" reads any file of records back
+and reports on it, including the total that DataStreamsDemo computes but
+never prints.
+
+    invoice write   stream, buffered
+    invoice read    stream, buffered
+    invoice totals  buffered
+    invoice encode  buffered
+    invoice decode  buffered
+
+STREAM puts the DataOutputStream directly on the FileOutputStream, so every
+writeDouble, writeInt and writeUTF is at least one system call. BUFFERED is
+DataStreamsDemo as written, with a buffered stream in between.
+
+"invoice totals" loads the file into an InvoiceTable and reports the units
+and amount per description, so it works on files far larger than the heap.
+"invoice encode" converts a file to the dictionary-encoded format of
+DictionaryInvoiceFormat, and "invoice decode" converts it back. Reading
+commands accept either format.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ *
+ * @author david
+ */
+public class InvoiceCommands {
+
+    public static void write(Path target, IoStrategy strategy) throws IOException {
+        boolean buffered = buffered(strategy, "invoice write");
+        OutputStream file = new FileOutputStream(target.toFile());
+        try (DataOutputStream out = new DataOutputStream(
+                buffered ? new BufferedOutputStream(file) : file)) {
+            for (int i = 0; i < DataStreamsDemo.prices.length; ++i) {
+                out.writeDouble(DataStreamsDemo.prices[i]);
+                out.writeInt(DataStreamsDemo.units[i]);
+                out.writeUTF(DataStreamsDemo.descs[i]);
+            }
+        }
+    }
+
+    /*
+    Prints one line per record, as DataStreamsDemo does, and then the total:
+
+        You ordered 12 units of Java T-shirt at $19.99
+        ...
+        For a TOTAL of: $892.88
+    */
+    public static void read(Path source, OutputStream stdout, IoStrategy strategy)
+            throws IOException {
+        boolean buffered = buffered(strategy, "invoice read");
+        boolean dictionary = DictionaryInvoiceFormat.isDictionaryFile(source);
+        InputStream file = new FileInputStream(source.toFile());
+        Writer out = new BufferedWriter(new OutputStreamWriter(stdout), CopyEngine.BUFFER_SIZE);
+        var text = new NumberText();
+        char[] num = new char[400];
+        double[] total = {0.0};
+        DictionaryInvoiceFormat.RecordVisitor report = (price, unit, desc) -> {
+            out.write("You ordered ");
+            out.write(num, 0, text.writeInt(unit, num, 0));
+            out.write(" units of ");
+            out.write(desc);
+            out.write(" at $");
+            out.write(num, 0, text.writeFixed(price, 2, num, 0));
+            out.write(System.lineSeparator());
+            total[0] += unit * price;
+        };
+        try (DataInputStream in = new DataInputStream(
+                buffered ? new BufferedInputStream(file) : file)) {
+            if (dictionary) {
+                DictionaryInvoiceFormat.read(in, report);
+            } else {
+                while (true) {
+                    double price;
+                    try {
+                        price = in.readDouble();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    int unit = in.readInt();
+                    report.record(price, unit, in.readUTF());
+                }
+            }
+        }
+        out.write("For a TOTAL of: $");
+        out.write(num, 0, text.writeFixed(total[0], 2, num, 0));
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+
+    /*
+        Java T-shirt: 12 units, $239.88
+        ...
+        For a TOTAL of: $892.88
+    */
+    public static void totals(Path source, OutputStream stdout, IoStrategy strategy)
+            throws IOException {
+        if (strategy != IoStrategy.BUFFERED) {
+            throw BasicIO.unsupported("invoice totals", strategy, IoStrategy.BUFFERED);
+        }
+        InvoiceTable table = InvoiceTable.read(source);
+        long[] units = new long[table.descriptionCount()];
+        double[] amounts = new double[table.descriptionCount()];
+        table.totalsByDescription(units, amounts);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(stdout), CopyEngine.BUFFER_SIZE);
+        var text = new NumberText();
+        char[] num = new char[400];
+        double total = 0.0;
+        for (int id = 0; id < units.length; ++id) {
+            out.write(table.dictionaryEntry(id));
+            out.write(": ");
+            out.write(num, 0, text.writeLong(units[id], num, 0));
+            out.write(" units, $");
+            out.write(num, 0, text.writeFixed(amounts[id], 2, num, 0));
+            out.write(System.lineSeparator());
+            total += amounts[id];
+        }
+        out.write("For a TOTAL of: $");
+        out.write(num, 0, text.writeFixed(total, 2, num, 0));
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+
+    public static void encode(Path source, Path target, IoStrategy strategy)
+            throws IOException {
+        if (strategy != IoStrategy.BUFFERED) {
+            throw BasicIO.unsupported("invoice encode", strategy, IoStrategy.BUFFERED);
+        }
+        DictionaryInvoiceFormat.write(InvoiceTable.read(source), target);
+    }
+
+    public static void decode(Path source, Path target, IoStrategy strategy)
+            throws IOException {
+        if (strategy != IoStrategy.BUFFERED) {
+            throw BasicIO.unsupported("invoice decode", strategy, IoStrategy.BUFFERED);
+        }
+        InvoiceTable.read(source).write(target);
+    }
+
+    private static boolean buffered(IoStrategy strategy, String command) {
+        return switch (strategy) {
+            case STREAM -> false;
+            case BUFFERED -> true;
+            default -> throw BasicIO.unsupported(command, strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED);
+        };
+    }
+}
@@ -0,0 +1,240 @@
+/*
+An Invoice Table Off the Heap
+
+DataStreamsDemo keeps its invoice in three parallel arrays, and a program that
+reads records into objects needs one object per record plus its String. Both
+put every row on the Java heap, where the garbage collector has to trace and
+copy it. With hundreds of millions of rows the heap gets big and the pauses
+get long.
+
+InvoiceTable stores each field in its own column of fixed-width values in
+direct ByteBuffers, which live outside the heap:
+
+    price        8 bytes per row, the double as read by readDouble
+    units        4 bytes per row
+    description  4 bytes per row, an index into the table's dictionary
+
+Descriptions repeat: a few thousand product names across millions of lines.
+The dictionary keeps each distinct description once, as a String on the heap,
+and the column holds its index. However many rows are appended, the heap holds
+only the dictionary and one small ByteBuffer object per chunk of a million
+rows. A column grows a chunk at a time, so a direct buffer never has to be
+larger than its 2 GB limit. A chunk starts at a thousand rows and doubles
+until it holds a million, so a small table takes little direct memory.
+
+Direct buffers count against -XX:MaxDirectMemorySize, which defaults to the
+maximum heap size. A big table on a small heap needs both, for example
+-Xmx64m -XX:MaxDirectMemorySize=8g for a hundred million rows.
+
+The table reads and writes the file format of DataStreamsDemo, and reads and
+writes the dictionary-encoded variant through DictionaryInvoiceFormat. It is
+not safe for use by several threads at once.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author david
+ */
+public class InvoiceTable {
+
+    static final int CHUNK_SHIFT = 20;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    static final int FIRST_CHUNK_ROWS = 1 << 10;
+
+    /*
+    One column of fixed-width values, in chunks of CHUNK_ROWS rows. Values
+    are addressed by absolute index, so the buffers' positions never move.
+    The last chunk may be smaller; it is copied into one twice its size when
+    a row does not fit.
+    */
+    static final class Column {
+
+        final int width;
+        final List<ByteBuffer> chunks = new ArrayList<>();
+
+        Column(int width) {
+            this.width = width;
+        }
+
+        ByteBuffer chunk(long row) {
+            int c = (int) (row >>> CHUNK_SHIFT);
+            if (c == chunks.size()) {
+                chunks.add(allocate(FIRST_CHUNK_ROWS));
+            }
+            ByteBuffer chunk = chunks.get(c);
+            if (offset(row) == chunk.capacity()) {
+                ByteBuffer larger = allocate(2 * chunk.capacity() / width);
+                larger.put(0, chunk, 0, chunk.capacity());
+                chunks.set(c, larger);
+                chunk = larger;
+            }
+            return chunk;
+        }
+
+        private ByteBuffer allocate(int rows) {
+            return ByteBuffer.allocateDirect(rows * width).order(ByteOrder.nativeOrder());
+        }
+
+        int offset(long row) {
+            return ((int) row & CHUNK_MASK) * width;
+        }
+    }
+
+    public interface RowVisitor {
+
+        void row(double price, int units, int descId);
+    }
+
+    private final Column prices = new Column(Double.BYTES);
+    private final Column units = new Column(Integer.BYTES);
+    private final Column descIds = new Column(Integer.BYTES);
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> descs = new ArrayList<>();
+    private long rows;
+
+    public long size() {
+        return rows;
+    }
+
+    public long append(double price, int unit, String desc) {
+        return append(price, unit, idOf(desc));
+    }
+
+    long append(double price, int unit, int descId) {
+        long row = rows;
+        prices.chunk(row).putDouble(prices.offset(row), price);
+        units.chunk(row).putInt(units.offset(row), unit);
+        descIds.chunk(row).putInt(descIds.offset(row), descId);
+        rows = row + 1;
+        return row;
+    }
+
+    /*
+    The dictionary index of a description, added if it is new. Every row with
+    the same description shares the String instance kept here.
+    */
+    public int idOf(String desc) {
+        Integer id = ids.get(desc);
+        if (id == null) {
+            id = descs.size();
+            descs.add(desc);
+            ids.put(desc, id);
+        }
+        return id;
+    }
+
+    public int descriptionCount() {
+        return descs.size();
+    }
+
+    /* The description idOf gave the index descId, not that of a row. */
+    public String dictionaryEntry(int descId) {
+        return descs.get(descId);
+    }
+
+    public double price(long row) {
+        check(row);
+        return prices.chunks.get((int) (row >>> CHUNK_SHIFT)).getDouble(prices.offset(row));
+    }
+
+    public int units(long row) {
+        check(row);
+        return units.chunks.get((int) (row >>> CHUNK_SHIFT)).getInt(units.offset(row));
+    }
+
+    public int descId(long row) {
+        check(row);
+        return descIds.chunks.get((int) (row >>> CHUNK_SHIFT)).getInt(descIds.offset(row));
+    }
+
+    public String description(long row) {
+        return descs.get(descId(row));
+    }
+
+    private void check(long row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + rows);
+        }
+    }
+
+    /* Visits every row in order, a chunk of each column at a time. */
+    public void scan(RowVisitor visitor) {
+        for (int c = 0; c < prices.chunks.size(); ++c) {
+            ByteBuffer p = prices.chunks.get(c);
+            ByteBuffer u = units.chunks.get(c);
+            ByteBuffer d = descIds.chunks.get(c);
+            int n = (int) Math.min(CHUNK_ROWS, rows - ((long) c << CHUNK_SHIFT));
+            for (int i = 0; i < n; ++i) {
+                visitor.row(p.getDouble(i * Double.BYTES), u.getInt(i * Integer.BYTES),
+                        d.getInt(i * Integer.BYTES));
+            }
+        }
+    }
+
+    /*
+    Group by description: fills units[id] with the number of units and
+    amounts[id] with the sum of price * units of every row with description
+    id. Both arrays must have at least descriptionCount() elements.
+    */
+    public void totalsByDescription(long[] units, double[] amounts) {
+        scan((price, unit, descId) -> {
+            units[descId] += unit;
+            amounts[descId] += price * unit;
+        });
+    }
+
+    /*
+    Reads a file of records as written by DataStreamsDemo, or a file in the
+    dictionary-encoded format.
+    */
+    public static InvoiceTable read(Path source) throws IOException {
+        if (DictionaryInvoiceFormat.isDictionaryFile(source)) {
+            return DictionaryInvoiceFormat.read(source);
+        }
+        InvoiceTable table = new InvoiceTable();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(source.toFile()), CopyEngine.BUFFER_SIZE))) {
+            while (true) {
+                double price;
+                try {
+                    price = in.readDouble();
+                } catch (EOFException e) {
+                    break;
+                }
+                int unit = in.readInt();
+                table.append(price, unit, in.readUTF());
+            }
+        }
+        return table;
+    }
+
+    /* Writes every row in the format of DataStreamsDemo. */
+    public void write(Path target) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(target.toFile()), CopyEngine.BUFFER_SIZE))) {
+            for (long row = 0; row < rows; ++row) {
+                out.writeDouble(price(row));
+                out.writeInt(units(row));
+                out.writeUTF(description(row));
+            }
+        }
+    }
+}
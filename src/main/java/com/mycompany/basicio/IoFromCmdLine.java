@@ -65,17 +65,41 @@ $ javac IoFromCmdLine.java && java IoFromCmdLine
 */
 // package com.mycompany.basicio;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.Console;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class IoFromCmdLine {
 
     public static void main(String args[]) throws IOException {
 
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(System.in), 1 << 16);
+            Writer out = new BufferedWriter(
+                    new OutputStreamWriter(System.out), 1 << 16);
+            int failed = batch(in, out,
+                    Runtime.getRuntime().availableProcessors());
+            out.flush();
+            System.exit(failed == 0 ? 0 : 1);
+        }
+
         Console c = System.console();
         if (c == null) {
-            System.err.println("No console.");
+            System.err.println("No console. Use --batch to read from standard input.");
             System.exit(1);
         }
 
@@ -106,6 +130,155 @@ public class IoFromCmdLine {
         Arrays.fill(oldPassword, ' ');
     }
 
+    /*
+    Batch mode. Under automation System.console() returns null, because 
+    Standard Input is a pipe rather than a terminal. With --batch the program 
+    reads one credential tuple per line from Standard Input instead:
+
+        login:oldPassword:newPassword
+
+    Only the first two colons separate fields, so the new password may itself 
+    contain colons. Blank lines and lines starting with # are skipped.
+
+    Lines are read BATCH_SIZE at a time and each batch is handed to a fixed 
+    pool of worker threads, so no more than one batch of records is ever in 
+    flight. Results come back in input order and the whole batch is written 
+    to the buffered Writer before it is flushed:
+
+        alice   changed
+        bob     denied
+        line 7  malformed
+
+    The return value is the number of records that were not changed.
+
+    As with readPassword, the passwords never become Strings, which could not
+    be overwritten. Each line is read into a char array that is reused for
+    the next line and blanked once the record is copied out of it. The copy
+    belongs to the record's task and is blanked when the task is done, along
+    with the password arrays parsed from it. Only the login becomes a String.
+    */
+    static final int BATCH_SIZE = 4096;
+
+    static int batch(BufferedReader in, Writer out, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int failed = 0;
+        try {
+            List<Callable<String>> tasks = new ArrayList<>(BATCH_SIZE);
+            LineBuffer line = new LineBuffer();
+            int lineNumber = 0;
+            boolean more;
+            do {
+                more = line.read(in);
+                if (more) {
+                    ++lineNumber;
+                    if (line.length > 0 && line.chars[0] != '#') {
+                        tasks.add(record(lineNumber, line.copy()));
+                    }
+                    line.wipe();
+                }
+                if (tasks.size() == BATCH_SIZE
+                        || (!more && !tasks.isEmpty())) {
+                    for (Future<String> result : pool.invokeAll(tasks)) {
+                        String status = result.get();
+                        if (!status.endsWith("\tchanged")) {
+                            ++failed;
+                        }
+                        out.write(status);
+                        out.write('\n');
+                    }
+                    out.flush();
+                    tasks.clear();
+                }
+            } while (more);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return failed;
+    }
+
+    /*
+    One line of input, read into an array that is reused from line to line
+    rather than into a String. A line ends at \n, \r or \r\n, as for
+    readLine.
+    */
+    static class LineBuffer {
+
+        char[] chars = new char[128];
+        int length;
+        private boolean afterCr;
+
+        /* Reads the next line; false at the end of the input. */
+        boolean read(BufferedReader in) throws IOException {
+            length = 0;
+            int c = in.read();
+            if (afterCr && c == '\n') {
+                c = in.read();
+            }
+            afterCr = false;
+            if (c == -1) {
+                return false;
+            }
+            while (c != -1 && c != '\n' && c != '\r') {
+                if (length == chars.length) {
+                    char[] bigger = Arrays.copyOf(chars, 2 * length);
+                    Arrays.fill(chars, ' ');
+                    chars = bigger;
+                }
+                chars[length++] = (char) c;
+                c = in.read();
+            }
+            afterCr = c == '\r';
+            return true;
+        }
+
+        char[] copy() {
+            return Arrays.copyOf(chars, length);
+        }
+
+        void wipe() {
+            Arrays.fill(chars, 0, length, ' ');
+        }
+    }
+
+    static Callable<String> record(int lineNumber, char[] line) {
+        return () -> {
+            int first = indexOf(line, ':', 0);
+            int second = first < 0 ? -1 : indexOf(line, ':', first + 1);
+            if (first <= 0 || second < 0) {
+                Arrays.fill(line, ' ');
+                return "line " + lineNumber + "\tmalformed";
+            }
+            String login = new String(line, 0, first);
+            char[] oldPassword = Arrays.copyOfRange(line, first + 1, second);
+            char[] newPassword = Arrays.copyOfRange(line, second + 1, line.length);
+            Arrays.fill(line, ' ');
+            try {
+                if (!verify(login, oldPassword)) {
+                    return login + "\tdenied";
+                }
+                change(login, newPassword);
+                return login + "\tchanged";
+            } finally {
+                Arrays.fill(oldPassword, ' ');
+                Arrays.fill(newPassword, ' ');
+            }
+        };
+    }
+
+    private static int indexOf(char[] chars, char c, int from) {
+        for (int i = from; i < chars.length; ++i) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     // Dummy change method.
     static boolean verify(String login, char[] password) {
         // This method always returns
@@ -0,0 +1,497 @@
+/*
+Rendering Numbers Without Formatter
+
+FormatRoot1 and FormatRoot2 show the two standard ways of turning numbers into
+text: print/println, which go through Double.toString, and format, which goes
+through java.util.Formatter. Both build a String (and, for format, a Formatter,
+a StringBuilder and a parsed format specifier) for every value printed. That is
+fine for a tutorial, but a report that prints millions of prices spends most of
+its time allocating.
+
+NumberText renders the same text straight into a byte[] or char[] supplied by
+the caller. Every write method returns the offset just past the last character
+written, so calls can be chained:
+
+    int n = text.writeAscii("The square root of ", buf, 0);
+    n = text.writeInt(2, buf, n);
+    n = text.writeAscii(" is ", buf, n);
+    n = text.writeDouble(Math.sqrt(2), buf, n);
+
+writeDouble produces exactly what Double.toString produces. The digits come
+from the Ryu algorithm (Ulf Adams, "Ryu: Fast Float-to-String Conversion",
+PLDI 2018): the shortest decimal that reads back as the same double, and of
+those the one closest to it. Like Double.toString, a value whose shortest
+decimal has a single digit is given a second digit when that is closer, so
+Double.MIN_VALUE prints as 4.9E-324, not 5.0E-324.
+
+writeFixed produces what %.Nf produces: Formatter rounds the shortest decimal
+half-up to N fraction digits, and pads it with zeros, so %.1f of 0.15 is 0.2
+and %.20f of 0.1 is 0.10000000000000000000. The padded overload adds the + and
+0 flags and a width, as in %+020.10f. Output is always in the form of
+Locale.ROOT: a '.' separator and no grouping.
+
+A NumberText keeps a little scratch state between calls, so use one instance
+per thread. The caller sizes the destination array; a double takes at most 24
+characters, a long 20.
+*/
+package com.mycompany.basicio;
+
+import java.math.BigInteger;
+
+/**
+ *
+ * @author david
+ */
+public class NumberText {
+
+    static final int POW5_BITCOUNT = 125;
+    static final int POW5_INV_BITCOUNT = 125;
+
+    /*
+    128-bit approximations of 5^i and 2^k/5^q. A full table takes tens of
+    milliseconds to build with BigInteger, longer than a short program takes
+    to run, so each entry is computed the first time it is needed. A run that
+    prints prices of similar size only ever needs a handful of them. The
+    fields of a Split are final, so an entry can be shared between threads
+    without locking; two threads may compute the same entry, which is
+    harmless.
+    */
+    record Split(long lo, long hi) {
+    }
+
+    static final Split[] POW5_SPLIT = new Split[326];
+    static final Split[] POW5_INV_SPLIT = new Split[342];
+
+    static Split pow5Split(int i) {
+        Split split = POW5_SPLIT[i];
+        if (split == null) {
+            BigInteger pow = BigInteger.valueOf(5).pow(i);
+            int shift = pow.bitLength() - POW5_BITCOUNT;
+            split = POW5_SPLIT[i] = split(shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift));
+        }
+        return split;
+    }
+
+    static Split pow5InvSplit(int i) {
+        Split split = POW5_INV_SPLIT[i];
+        if (split == null) {
+            BigInteger pow = BigInteger.valueOf(5).pow(i);
+            int j = pow.bitLength() - 1 + POW5_INV_BITCOUNT;
+            split = POW5_INV_SPLIT[i] = split(BigInteger.ONE.shiftLeft(j).divide(pow).add(BigInteger.ONE));
+        }
+        return split;
+    }
+
+    private static Split split(BigInteger v) {
+        return new Split(v.longValue(), v.shiftRight(64).longValue());
+    }
+
+    static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    // the last decimal from decompose(): value = digits * 10^exponent
+    private long digits;
+    private int exponent;
+
+    private byte[] scratch = new byte[32];
+
+    public int writeAscii(CharSequence s, byte[] buf, int off) {
+        for (int i = 0, n = s.length(); i < n; ++i) {
+            buf[off++] = (byte) s.charAt(i);
+        }
+        return off;
+    }
+
+    public int writeInt(int v, byte[] buf, int off) {
+        return writeLong(v, buf, off);
+    }
+
+    public int writeLong(long v, byte[] buf, int off) {
+        if (v < 0) {
+            buf[off++] = '-';
+            if (v == Long.MIN_VALUE) {
+                // -v overflows, so peel off the last digit first
+                off = writeUnsigned(-(v / 10), buf, off);
+                buf[off++] = '8';
+                return off;
+            }
+            v = -v;
+        }
+        return writeUnsigned(v, buf, off);
+    }
+
+    private static int writeUnsigned(long v, byte[] buf, int off) {
+        int end = off + digitCount(v);
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        return end;
+    }
+
+    static int digitCount(long v) {
+        int n = 1;
+        while (n < POW10.length && v >= POW10[n]) {
+            ++n;
+        }
+        return n;
+    }
+
+    public int writeDouble(double v, byte[] buf, int off) {
+        long bits = Double.doubleToRawLongBits(v);
+        if (Double.isNaN(v)) {
+            return writeAscii("NaN", buf, off);
+        }
+        if (bits < 0) {
+            buf[off++] = '-';
+        }
+        if (Double.isInfinite(v)) {
+            return writeAscii("Infinity", buf, off);
+        }
+        if (v == 0) {
+            return writeAscii("0.0", buf, off);
+        }
+        decompose(bits);
+        int n = digitCount(digits);
+        int pos = writeUnsigned(digits, scratch, 0) - n;
+        int e = n + exponent - 1;
+        if (e >= -3 && e < 7) {
+            // plain notation: 0.00123, 1.5, 1200.0
+            if (e < 0) {
+                buf[off++] = '0';
+                buf[off++] = '.';
+                for (int i = -1; i > e; --i) {
+                    buf[off++] = '0';
+                }
+                System.arraycopy(scratch, pos, buf, off, n);
+                return off + n;
+            }
+            for (int i = 0; i <= e; ++i) {
+                buf[off++] = i < n ? scratch[pos + i] : (byte) '0';
+            }
+            buf[off++] = '.';
+            if (n <= e + 1) {
+                buf[off++] = '0';
+                return off;
+            }
+            System.arraycopy(scratch, pos + e + 1, buf, off, n - e - 1);
+            return off + n - e - 1;
+        }
+        // computerized scientific notation: 1.0E7, 4.9E-324
+        buf[off++] = scratch[pos];
+        buf[off++] = '.';
+        if (n == 1) {
+            buf[off++] = '0';
+        } else {
+            System.arraycopy(scratch, pos + 1, buf, off, n - 1);
+            off += n - 1;
+        }
+        buf[off++] = 'E';
+        return writeLong(e, buf, off);
+    }
+
+    public int writeFixed(double v, int precision, byte[] buf, int off) {
+        return writeFixed(v, precision, false, 0, buf, off);
+    }
+
+    /*
+    Same as %.Nf with optional + and 0 flags and a width: plus adds a sign to
+    non-negative values, and a positive width pads with zeros after the sign.
+    NaN and Infinity are padded with blanks instead, as Formatter does.
+    */
+    public int writeFixed(double v, int precision, boolean plus, int width,
+            byte[] buf, int off) {
+        if (precision < 0) {
+            throw new IllegalArgumentException("precision " + precision);
+        }
+        long bits = Double.doubleToRawLongBits(v);
+        boolean special = Double.isNaN(v) || Double.isInfinite(v);
+        int start = off;
+        if (bits < 0 && !Double.isNaN(v)) {
+            buf[off++] = '-';
+        } else if (plus && !Double.isNaN(v)) {
+            buf[off++] = '+';
+        }
+        int signEnd = off;
+        if (special) {
+            off = writeAscii(Double.isNaN(v) ? "NaN" : "Infinity", buf, off);
+        } else {
+            off = writeFixedDigits(bits, precision, buf, off);
+        }
+        int pad = width - (off - start);
+        if (pad > 0) {
+            int from = special ? start : signEnd;
+            System.arraycopy(buf, from, buf, from + pad, off - from);
+            for (int i = 0; i < pad; ++i) {
+                buf[from + i] = special ? (byte) ' ' : (byte) '0';
+            }
+            off += pad;
+        }
+        return off;
+    }
+
+    private int writeFixedDigits(long bits, int precision, byte[] buf, int off) {
+        long d = 0;
+        int e = -precision;
+        if ((bits & Long.MAX_VALUE) != 0) {
+            decompose(bits);
+            d = digits;
+            e = exponent;
+            int n = digitCount(d);
+            int keep = n + e + precision;
+            if (keep < 0) {
+                d = 0;
+                e = -precision;
+            } else if (keep < n) {
+                // round half-up to 'keep' digits, as Formatter does
+                int drop = n - keep;
+                long next = d / POW10[drop - 1] % 10;
+                d = d / POW10[drop] + (next >= 5 ? 1 : 0);
+                e += drop;
+            }
+        }
+        int n = digitCount(d);
+        int pos = writeUnsigned(d, scratch, 0) - n;
+        int intDigits = n + e;
+        if (intDigits <= 0) {
+            buf[off++] = '0';
+        } else {
+            for (int i = 0; i < intDigits; ++i) {
+                buf[off++] = i < n ? scratch[pos + i] : (byte) '0';
+            }
+        }
+        if (precision == 0) {
+            return off;
+        }
+        buf[off++] = '.';
+        int written = 0;
+        for (int i = intDigits; i < 0 && written < precision; ++i, ++written) {
+            buf[off++] = '0';
+        }
+        for (int i = Math.max(intDigits, 0); i < n; ++i, ++written) {
+            buf[off++] = scratch[pos + i];
+        }
+        for (; written < precision; ++written) {
+            buf[off++] = '0';
+        }
+        return off;
+    }
+
+    public int writeInt(int v, char[] buf, int off) {
+        return widen(writeInt(v, scratchFor(11), 0), buf, off);
+    }
+
+    public int writeLong(long v, char[] buf, int off) {
+        return widen(writeLong(v, scratchFor(20), 0), buf, off);
+    }
+
+    public int writeDouble(double v, char[] buf, int off) {
+        return widen(writeDouble(v, scratchFor(24), 0), buf, off);
+    }
+
+    public int writeFixed(double v, int precision, char[] buf, int off) {
+        return writeFixed(v, precision, false, 0, buf, off);
+    }
+
+    public int writeFixed(double v, int precision, boolean plus, int width,
+            char[] buf, int off) {
+        int max = Math.max(width, 312 + precision);
+        return widen(writeFixed(v, precision, plus, width, scratchFor(max), 0), buf, off);
+    }
+
+    /*
+    The char[] methods render into a private byte array first. It is sized for
+    the longest possible result and only ever grows, so after the first few
+    calls no more arrays are allocated.
+    */
+    private byte[] out;
+
+    private byte[] scratchFor(int length) {
+        if (out == null || out.length < length) {
+            out = new byte[length];
+        }
+        return out;
+    }
+
+    private int widen(int length, char[] buf, int off) {
+        for (int i = 0; i < length; ++i) {
+            buf[off++] = (char) out[i];
+        }
+        return off;
+    }
+
+    /*
+    Ryu: find the shortest decimal in the rounding interval of a finite,
+    non-zero double, and leave it in 'digits' and 'exponent'.
+    */
+    private void decompose(long bits) {
+        int ieeeExponent = (int) (bits >>> 52) & 0x7ff;
+        long ieeeMantissa = bits & ((1L << 52) - 1);
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - 1023 - 52 - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - 1023 - 52 - 2;
+            m2 = (1L << 52) | ieeeMantissa;
+        }
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        // the interval [mm, mp] around mv = 4 * m2 that rounds back to v
+        long mv = 4 * m2;
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        long mp = mv + 2;
+        long mm = mv - 1 - mmShift;
+
+        long vr, vp, vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            Split mul = pow5InvSplit(q);
+            vr = mulShift64(mv, mul, i);
+            vp = mulShift64(mp, mul, i);
+            vm = mulShift64(mm, mul, i);
+            if (q <= 21) {
+                // only one of mp, mv and mm can be a multiple of 5, if any
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = pow5Factor(mv) >= q;
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = pow5Factor(mm) >= q;
+                } else {
+                    vp -= pow5Factor(mp) >= q ? 1 : 0;
+                }
+            }
+        } else {
+            int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            Split mul = pow5Split(i);
+            vr = mulShift64(mv, mul, j);
+            vp = mulShift64(mp, mul, j);
+            vm = mulShift64(mm, mul, j);
+            if (vr < 100) {
+                /* The smallest subnormals come out with two digits and no
+                digit to round them by, so 2 * MIN_VALUE would print as
+                9.8E-324 rather than 9.9E-324: take one digit more. */
+                vr = mulShift64(10 * mv, mul, j);
+                vp = mulShift64(10 * mp, mul, j);
+                vm = mulShift64(10 * mm, mul, j);
+                --e10;
+            }
+            if (q <= 1) {
+                // mv has at least q trailing zero bits, since it is 4 * m2
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    --vp;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+            }
+        }
+
+        /*
+        Drop digits while the interval still holds a shorter decimal, but
+        never below two digits: Double.toString prefers a closer two-digit
+        decimal over a one-digit one.
+        */
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vp / 10 > vm / 10 && vr >= 100) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0 && vr >= 100) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    ++removed;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                // exactly halfway: round to even
+                lastRemovedDigit = 4;
+            }
+            output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros))
+                    || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            boolean roundUp = false;
+            while (vp / 10 > vm / 10 && vr >= 100) {
+                roundUp = vr % 10 >= 5;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            output = vr + (vr == vm || roundUp ? 1 : 0);
+        }
+        int exp = e10 + removed;
+        while (output % 10 == 0) {
+            output /= 10;
+            ++exp;
+        }
+        digits = output;
+        exponent = exp;
+    }
+
+    private static long mulShift64(long m, Split mul, int j) {
+        // ((m * mul) >> j) on the full 192-bit product, j in [64, 128)
+        long b0hi = Math.unsignedMultiplyHigh(m, mul.lo());
+        long b2lo = m * mul.hi();
+        long b2hi = Math.unsignedMultiplyHigh(m, mul.hi());
+        long lo = b2lo + b0hi;
+        long hi = b2hi + (Long.compareUnsigned(lo, b2lo) < 0 ? 1 : 0);
+        int s = j - 64;
+        return s == 0 ? lo : (lo >>> s) | (hi << (64 - s));
+    }
+
+    private static int pow5Factor(long value) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            ++count;
+        }
+        return count;
+    }
+
+    // floor(e * log10(2)), exact for 0 <= e <= 1650
+    private static int log10Pow2(int e) {
+        return (int) ((e * 78913L) >>> 18);
+    }
+
+    // floor(e * log10(5)), exact for 0 <= e <= 2620
+    private static int log10Pow5(int e) {
+        return (int) ((e * 732923L) >>> 20);
+    }
+
+    // ceil(log2(5^e)), or 1 for e == 0
+    private static int pow5bits(int e) {
+        return (int) (((e * 1217359L) >>> 19) + 1);
+    }
+}
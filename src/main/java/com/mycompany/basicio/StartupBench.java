@@ -0,0 +1,173 @@
+/*
+Startup Time
+
+The programs of the lesson run for a few milliseconds on files like
+xanadu.txt, and most of that time goes to starting the JVM and loading
+classes: Scanner and the regex engine, Formatter, the object serialization
+machinery. Class Data Sharing (CDS) lets the JVM map classes that were loaded,
+parsed and verified in an earlier run instead of loading them again. The JDK
+ships an archive of its most common classes; an AppCDS archive adds the
+classes a particular program loads, including the program's own.
+
+StartupBench does two things, each in a fresh JVM per program:
+
+    train    runs every program once with -XX:ArchiveClassesAtExit, leaving
+             one archive per program in the work directory.
+    measure  runs every program repeatedly with and without its archive and
+             prints the median time to the first byte of output (or to exit,
+             for programs that write nothing to Standard Output).
+
+    java -cp target/BasicIO-1.0-SNAPSHOT.jar com.mycompany.basicio.StartupBench \
+            measure . target/BasicIO-1.0-SNAPSHOT.jar target/cds
+
+"mvn -Pappcds package" runs the training step as part of the build. The demo
+programs use file names relative to the current directory, so every run
+happens in the work directory, on copies of the sample files. Classes are only
+archived from JAR files, so the programs run from the packaged jar, and an
+archive is only used with the same jar it was created with.
+*/
+package com.mycompany.basicio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * @author david
+ */
+public class StartupBench {
+
+    record Program(String name, String stdin, String... args) {
+    }
+
+    static final String PKG = "com.mycompany.basicio.";
+
+    static final Program[] PROGRAMS = {
+        new Program("CopyBytes", "", PKG + "CopyBytes"),
+        new Program("CopyCharacters", "", PKG + "CopyCharacters"),
+        new Program("CopyLines", "", PKG + "CopyLines"),
+        new Program("ScanXan", "", PKG + "ScanXan"),
+        new Program("ScanSum", "", PKG + "ScanSum"),
+        new Program("FormatRoot1", "", PKG + "FormatRoot1"),
+        new Program("FormatRoot2", "", PKG + "FormatRoot2"),
+        new Program("DataStreamsDemo", "", PKG + "DataStreamsDemo"),
+        new Program("ObjectStreamsDemo", "", PKG + "ObjectStreamsDemo"),
+        new Program("IoFromCmdLine", "alice:old:new\n", "IoFromCmdLine", "--batch"),
+        new Program("BasicIO-copy-lines", "",
+                PKG + "BasicIO", "copy-lines", "xanadu.txt", "characteroutput.txt"),
+        new Program("BasicIO-scan", "", PKG + "BasicIO", "scan", "xanadu.txt"),
+        new Program("BasicIO-sum", "", PKG + "BasicIO", "sum", "--strategy", "mmap", "usnumbers.txt"),
+    };
+
+    static final String[] FIXTURES = {"xanadu.txt", "usnumbers.txt"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4 || !(args[0].equals("train") || args[0].equals("measure"))) {
+            System.err.println("usage: StartupBench train|measure BASEDIR JAR WORKDIR [RUNS]");
+            System.exit(2);
+        }
+        Path basedir = Path.of(args[1]);
+        Path jar = Path.of(args[2]).toAbsolutePath();
+        Path workdir = Path.of(args[3]).toAbsolutePath();
+        Files.createDirectories(workdir);
+        for (String fixture : FIXTURES) {
+            Files.copy(basedir.resolve(fixture), workdir.resolve(fixture),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (args[0].equals("train")) {
+            for (Program p : PROGRAMS) {
+                Path archive = workdir.resolve(p.name() + ".jsa");
+                Files.deleteIfExists(archive);
+                run(p, jar, workdir, "-XX:ArchiveClassesAtExit=" + archive);
+                System.out.println("archived " + p.name() + " in " + archive);
+            }
+            return;
+        }
+
+        int runs = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        System.out.println("median time to first byte in ms, " + runs + " runs");
+        System.out.println("program                 default   AppCDS");
+        for (Program p : PROGRAMS) {
+            Path archive = workdir.resolve(p.name() + ".jsa");
+            // one run each to warm the page cache
+            run(p, jar, workdir, "-Xshare:auto");
+            long[] plain = new long[runs];
+            long[] shared = new long[runs];
+            for (int i = 0; i < runs; ++i) {
+                plain[i] = run(p, jar, workdir, "-Xshare:auto");
+                shared[i] = Files.exists(archive)
+                        ? run(p, jar, workdir, "-XX:SharedArchiveFile=" + archive)
+                        : -1;
+            }
+            System.out.println(p.name() + " ".repeat(Math.max(1, 22 - p.name().length()))
+                    + pad(millis(median(plain)), 9)
+                    + (shared[0] < 0 ? "   (no archive)" : pad(millis(median(shared)), 9)));
+        }
+    }
+
+    /*
+    Returns the nanoseconds from starting the process to the first byte on
+    its Standard Output, or to its exit if it prints nothing.
+    */
+    static long run(Program p, Path jar, Path workdir, String jvmOption) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(jvmOption);
+        command.add("-cp");
+        command.add(jar.toString());
+        command.addAll(Arrays.asList(p.args()));
+        ProcessBuilder pb = new ProcessBuilder(command)
+                .directory(workdir.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD);
+
+        long start = System.nanoTime();
+        Process process = pb.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(p.stdin().getBytes(StandardCharsets.UTF_8));
+        }
+        long firstByte;
+        try (InputStream stdout = process.getInputStream()) {
+            int b = stdout.read();
+            firstByte = System.nanoTime() - start;
+            if (b != -1) {
+                stdout.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        try {
+            int status = process.waitFor();
+            if (status != 0) {
+                throw new IOException(p.name() + " exited with status " + status);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(p.name() + " interrupted");
+        }
+        return firstByte;
+    }
+
+    static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    static String millis(long nanos) {
+        byte[] buf = new byte[32];
+        return new String(buf, 0, new NumberText().writeFixed(nanos / 1e6, 1, buf, 0),
+                StandardCharsets.US_ASCII);
+    }
+
+    static String pad(String s, int width) {
+        return s.length() >= width ? s + " " : " ".repeat(width - s.length()) + s;
+    }
+}
@@ -0,0 +1,557 @@
+/*
+The character-stream and scanning programs of the lesson, CopyCharacters,
+CopyLines, ScanXan and ScanSum, with the input and output files passed in
+instead of hardcoded, and with a choice of strategy:
+
+    copy-chars   stream, buffered, channel
+    copy-lines   stream, buffered, mmap
+    scan         stream, buffered, mmap
+    sum          stream, buffered, mmap
+    count-lines  stream, buffered, mmap
+
+STREAM is the program as the tutorial wrote it. BUFFERED wraps the same
+classes in large buffers. The MMAP versions skip the Reader altogether: they
+map the file and look for line terminators or white space in the bytes, which
+works because none of those bytes can occur inside a multi-byte UTF-8
+character. ByteSearch does the looking, eight bytes at a time. Lines and
+tokens are never split between two mapped windows, since each window except
+the last is cut back to its last terminator.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ *
+ * @author david
+ */
+public class TextCommands {
+
+    static final int BUFFER_SIZE = CopyEngine.BUFFER_SIZE;
+    static final long MAP_WINDOW = CopyEngine.MAP_WINDOW;
+
+    public static void copyChars(Path source, Path target, IoStrategy strategy)
+            throws IOException {
+        copyChars(source, target, strategy, null);
+    }
+
+    /* Copies and adds the bytes written to sums, unless it is null. */
+    public static void copyChars(Path source, Path target, IoStrategy strategy,
+            CopyChecksum sums) throws IOException {
+        switch (strategy) {
+            case STREAM -> {
+                try (Reader in = new FileReader(source.toFile());
+                        Writer out = new OutputStreamWriter(openOutput(target, sums))) {
+                    int c;
+                    while ((c = in.read()) != -1) {
+                        out.write(c);
+                    }
+                }
+            }
+            case BUFFERED -> {
+                try (Reader in = new BufferedReader(new FileReader(source.toFile()), BUFFER_SIZE);
+                        Writer out = new BufferedWriter(
+                                new OutputStreamWriter(openOutput(target, sums)), BUFFER_SIZE)) {
+                    copy(in, out);
+                }
+            }
+            case CHANNEL -> {
+                /* Channels.newReader(ch, charset) would throw on a malformed
+                byte; FileReader and OutputStreamWriter replace it, and so
+                must this, or the strategy would change the result. */
+                Charset cs = Charset.defaultCharset();
+                try (FileChannel inCh = FileChannel.open(source, StandardOpenOption.READ);
+                        FileChannel outCh = CopyEngine.openTarget(target);
+                        Reader in = Channels.newReader(inCh, cs.newDecoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
+                        Writer out = Channels.newWriter(sums == null ? outCh : sums.wrap(outCh),
+                                cs.newEncoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1)) {
+                    copy(in, out);
+                }
+            }
+            default -> throw BasicIO.unsupported("copy-chars", strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.CHANNEL);
+        }
+    }
+
+    private static void copy(Reader in, Writer out) throws IOException {
+        char[] buf = new char[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+    }
+
+    public static void copyLines(Path source, Path target, IoStrategy strategy)
+            throws IOException {
+        copyLines(source, target, strategy, null);
+    }
+
+    /* Copies and adds the bytes written to sums, unless it is null. */
+    public static void copyLines(Path source, Path target, IoStrategy strategy,
+            CopyChecksum sums) throws IOException {
+        switch (strategy) {
+            case STREAM, BUFFERED -> {
+                int size = strategy == IoStrategy.STREAM ? 8192 : BUFFER_SIZE;
+                // not a PrintWriter, which would swallow a failed write
+                try (BufferedReader in = new BufferedReader(new FileReader(source.toFile()), size);
+                        BufferedWriter out = new BufferedWriter(
+                                new OutputStreamWriter(openOutput(target, sums)), size)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        out.write(line);
+                        out.newLine();
+                    }
+                }
+            }
+            case MMAP -> copyLinesMapped(source, target, sums);
+            default -> throw BasicIO.unsupported("copy-lines", strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP);
+        }
+    }
+
+    /*
+    Like readLine, a line ends at \n, \r or \r\n, and like newLine every line
+    written ends with the platform line separator, including the last one.
+    */
+    static void copyLinesMapped(Path source, Path target, CopyChecksum sums) throws IOException {
+        byte[] eol = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        byte[] tmp = new byte[BUFFER_SIZE];
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                OutputStream out = new BufferedOutputStream(
+                        openOutput(target, sums), BUFFER_SIZE)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(MAP_WINDOW, size - pos));
+                int limit = windowLimit(map, pos + map.limit() == size, false);
+                int start = 0;
+                while (start < limit) {
+                    int i = ByteSearch.LINE_ENDS.indexIn(map, start, limit);
+                    if (i < 0) {
+                        write(map, start, limit, out, tmp);
+                        out.write(eol);
+                        break;
+                    }
+                    write(map, start, i, out, tmp);
+                    out.write(eol);
+                    if (map.get(i) == '\r' && i + 1 < limit && map.get(i + 1) == '\n') {
+                        ++i;
+                    }
+                    start = i + 1;
+                }
+                pos += limit;
+            }
+        }
+    }
+
+    /*
+    The target file, hashed on the way out when sums is given. The checksum
+    sees the encoded bytes, the same bytes verify reads back.
+    */
+    private static OutputStream openOutput(Path target, CopyChecksum sums) throws IOException {
+        OutputStream out = new FileOutputStream(target.toFile());
+        return sums == null ? out : sums.wrap(out);
+    }
+
+    public static void scan(Path source, OutputStream stdout, IoStrategy strategy)
+            throws IOException {
+        switch (strategy) {
+            case STREAM, BUFFERED -> {
+                Reader reader = new FileReader(source.toFile());
+                if (strategy == IoStrategy.BUFFERED) {
+                    reader = new BufferedReader(reader, BUFFER_SIZE);
+                }
+                Writer out = new BufferedWriter(new OutputStreamWriter(stdout), BUFFER_SIZE);
+                try (Scanner s = new Scanner(reader)) {
+                    while (s.hasNext()) {
+                        out.write('[');
+                        out.write(s.next());
+                        out.write("]\n");
+                    }
+                }
+                out.flush();
+            }
+            case MMAP -> scanMapped(source, stdout);
+            default -> throw BasicIO.unsupported("scan", strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP);
+        }
+    }
+
+    static void scanMapped(Path source, OutputStream stdout) throws IOException {
+        byte[] tmp = new byte[BUFFER_SIZE];
+        OutputStream out = new BufferedOutputStream(stdout, BUFFER_SIZE);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(MAP_WINDOW, size - pos));
+                int limit = windowLimit(map, pos + map.limit() == size, true);
+                int start;
+                int i = 0;
+                while ((start = ByteSearch.WHITESPACE.indexNotIn(map, i, limit)) >= 0) {
+                    i = tokenEnd(map, start, limit);
+                    out.write('[');
+                    write(map, start, i, out, tmp);
+                    out.write(']');
+                    out.write('\n');
+                }
+                pos += limit;
+            }
+        }
+        out.flush();
+    }
+
+    public static double sum(Path source, IoStrategy strategy) throws IOException {
+        switch (strategy) {
+            case STREAM, BUFFERED -> {
+                Reader reader = new FileReader(source.toFile());
+                if (strategy == IoStrategy.BUFFERED) {
+                    reader = new BufferedReader(reader, BUFFER_SIZE);
+                }
+                double sum = 0;
+                try (Scanner s = new Scanner(reader)) {
+                    s.useLocale(Locale.US);
+                    while (s.hasNext()) {
+                        if (s.hasNextDouble()) {
+                            sum += s.nextDouble();
+                        } else {
+                            s.next();
+                        }
+                    }
+                }
+                return sum;
+            }
+            case MMAP -> {
+                return sumMapped(source);
+            }
+            default -> throw BasicIO.unsupported("sum", strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP);
+        }
+    }
+
+    /*
+    The number of lines readLine would return. STREAM calls it, BUFFERED
+    counts terminators in blocks read into a byte array, and MMAP counts them
+    in the mapped file, both without decoding any characters.
+    */
+    public static long countLines(Path source, IoStrategy strategy) throws IOException {
+        switch (strategy) {
+            case STREAM -> {
+                long n = 0;
+                try (BufferedReader in = new BufferedReader(new FileReader(source.toFile()))) {
+                    while (in.readLine() != null) {
+                        ++n;
+                    }
+                }
+                return n;
+            }
+            case BUFFERED -> {
+                return countLinesBuffered(source);
+            }
+            case MMAP -> {
+                return countLinesMapped(source);
+            }
+            default -> throw BasicIO.unsupported("count-lines", strategy,
+                    IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP);
+        }
+    }
+
+    static long countLinesBuffered(Path source) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        ByteBuffer bytes = ByteBuffer.wrap(buf);
+        long lines = 0;
+        byte last = '\n';
+        try (InputStream in = new FileInputStream(source.toFile())) {
+            int n;
+            while ((n = in.readNBytes(buf, 0, buf.length)) > 0) {
+                lines += ByteSearch.countLines(bytes, 0, n);
+                // a \r\n across two blocks is one terminator
+                if (last == '\r' && buf[0] == '\n') {
+                    --lines;
+                }
+                last = buf[n - 1];
+            }
+        }
+        return last == '\n' || last == '\r' ? lines : lines + 1;
+    }
+
+    static long countLinesMapped(Path source) throws IOException {
+        long lines = 0;
+        byte last = '\n';
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(MAP_WINDOW, size - pos));
+                int limit = windowLimit(map, pos + map.limit() == size, false);
+                lines += ByteSearch.countLines(map, 0, limit);
+                if (last == '\r' && map.get(0) == '\n') {
+                    --lines;
+                }
+                last = map.get(limit - 1);
+                pos += limit;
+            }
+        }
+        return last == '\n' || last == '\r' ? lines : lines + 1;
+    }
+
+    static double sumMapped(Path source) throws IOException {
+        double sum = 0;
+        char[] token = new char[64];
+        char[] number = new char[64];
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(MAP_WINDOW, size - pos));
+                int limit = windowLimit(map, pos + map.limit() == size, true);
+                int start;
+                int i = 0;
+                while ((start = ByteSearch.WHITESPACE.indexNotIn(map, i, limit)) >= 0) {
+                    i = tokenEnd(map, start, limit);
+                    int length = i - start;
+                    if (length > token.length) {
+                        token = new char[length];
+                        number = new char[length];
+                    }
+                    int high = 0;
+                    for (int k = 0; k < length; ++k) {
+                        byte b = map.get(start + k);
+                        high |= b;
+                        token[k] = (char) b;
+                    }
+                    if (high < 0) {
+                        sum = sumDecoded(map, start, i, sum);
+                        continue;
+                    }
+                    int n = usDouble(token, 0, length, number);
+                    if (n >= 0) {
+                        sum += Double.parseDouble(new String(number, 0, n));
+                    }
+                }
+                pos += limit;
+            }
+        }
+        return sum;
+    }
+
+    /*
+    A token with bytes beyond ASCII, decoded as FileReader decodes it. Scanner
+    also splits tokens at Unicode white space such as U+3000, and reads
+    digits of other scripts, so the token may hold several numbers.
+    */
+    private static double sumDecoded(ByteBuffer map, int start, int end, double sum) {
+        byte[] bytes = new byte[end - start];
+        map.get(start, bytes);
+        char[] chars = new String(bytes, Charset.defaultCharset()).toCharArray();
+        char[] number = new char[chars.length];
+        int i = 0;
+        while (i < chars.length) {
+            while (i < chars.length && Character.isWhitespace(chars[i])) {
+                ++i;
+            }
+            int from = i;
+            while (i < chars.length && !Character.isWhitespace(chars[i])) {
+                ++i;
+            }
+            int n = i > from ? usDouble(chars, from, i, number) : -1;
+            if (n >= 0) {
+                sum += Double.parseDouble(new String(number, 0, n));
+            }
+        }
+        return sum;
+    }
+
+    /*
+    Reads a token the way a Scanner in Locale.US reads a double, and copies
+    it to out in the form Double.parseDouble takes. Returns the length
+    written, or -1 for a token that hasNextDouble rejects, which the caller
+    skips like ScanSum skips it with s.next(). The forms accepted are:
+
+        [+-]? numeral ('.' digits?)? exponent?
+        [+-]? '.' digits exponent?
+        [+-]? NaN | [+-]? Infinity
+        [+-]? 0x hexdigits? '.' hexdigits p [+-]? digits
+
+    where a numeral is plain digits, or a digit other than 0, up to two more
+    digits and groups of a ',' and three digits: "32,767" is a number,
+    "3,2767" and "0,123" are not. Digits are those of Character.isDigit and
+    become ASCII digits in out, as Scanner translates them. A hex float
+    without its p exponent passes Scanner's pattern but not parseDouble, so
+    Scanner skips it, and so does this.
+    */
+    static int usDouble(char[] in, int start, int end, char[] out) {
+        int n = 0;
+        int i = start;
+        if (in[i] == '+' || in[i] == '-') {
+            out[n++] = in[i++];
+        }
+        if (matches(in, i, end, "NaN") || matches(in, i, end, "Infinity")) {
+            System.arraycopy(in, i, out, n, end - i);
+            return n + end - i;
+        }
+        if (end - i > 2 && in[i] == '0' && (in[i + 1] == 'x' || in[i + 1] == 'X')) {
+            return hexDouble(in, start, end, out);
+        }
+        int digits = 0;
+        int run = 0;
+        int groups = 0;
+        for (; i < end; ++i) {
+            int d = digit(in[i]);
+            if (d >= 0) {
+                out[n++] = (char) ('0' + d);
+                ++digits;
+                ++run;
+            } else if (in[i] == ',') {
+                // the first group is 1 to 3 digits, not starting with an ASCII 0
+                if (groups == 0 ? run == 0 || run > 3 || in[i - run] == '0' : run != 3) {
+                    return -1;
+                }
+                ++groups;
+                run = 0;
+            } else {
+                break;
+            }
+        }
+        if (groups > 0 && run != 3) {
+            return -1;
+        }
+        if (i < end && in[i] == '.') {
+            out[n++] = '.';
+            for (++i; i < end && digit(in[i]) >= 0; ++i) {
+                out[n++] = (char) ('0' + digit(in[i]));
+                ++digits;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        if (i < end && (in[i] == 'e' || in[i] == 'E')) {
+            out[n++] = 'e';
+            if (++i < end && (in[i] == '+' || in[i] == '-')) {
+                out[n++] = in[i++];
+            }
+            int expStart = i;
+            for (; i < end && digit(in[i]) >= 0; ++i) {
+                out[n++] = (char) ('0' + digit(in[i]));
+            }
+            if (i == expStart) {
+                return -1;
+            }
+        }
+        return i == end ? n : -1;
+    }
+
+    private static int hexDouble(char[] in, int start, int end, char[] out) {
+        int i = start;
+        if (in[i] == '+' || in[i] == '-') {
+            ++i;
+        }
+        i += 2;
+        while (i < end && Character.digit(in[i], 16) >= 0 && in[i] < 0x80) {
+            ++i;
+        }
+        if (i == end || in[i] != '.') {
+            return -1;
+        }
+        int fraction = ++i;
+        while (i < end && Character.digit(in[i], 16) >= 0 && in[i] < 0x80) {
+            ++i;
+        }
+        if (i == fraction || i == end || (in[i] != 'p' && in[i] != 'P')) {
+            return -1;
+        }
+        if (++i < end && (in[i] == '+' || in[i] == '-')) {
+            ++i;
+        }
+        int expStart = i;
+        while (i < end && in[i] >= '0' && in[i] <= '9') {
+            ++i;
+        }
+        if (i == expStart || i != end) {
+            return -1;
+        }
+        System.arraycopy(in, start, out, 0, end - start);
+        return end - start;
+    }
+
+    private static boolean matches(char[] in, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (in[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* The value of an ASCII digit or a digit of another script, or -1. */
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        return c >= 0x80 && Character.isDigit(c) ? Character.digit(c, 10) : -1;
+    }
+
+    private static int tokenEnd(ByteBuffer map, int start, int limit) {
+        int end = ByteSearch.WHITESPACE.indexIn(map, start, limit);
+        return end < 0 ? limit : end;
+    }
+
+    /*
+    How much of a mapped window can be processed on its own: all of the last
+    window, otherwise everything up to and including the last line terminator
+    (or white space byte, for tokens). A window with no such byte at all is
+    processed whole.
+    */
+    static int windowLimit(ByteBuffer map, boolean last, boolean tokens) {
+        int limit = map.limit();
+        if (last) {
+            return limit;
+        }
+        int i = (tokens ? ByteSearch.WHITESPACE : ByteSearch.NEWLINE).lastIndexIn(map, 0, limit);
+        return i < 0 ? limit : i + 1;
+    }
+
+    static void write(ByteBuffer map, int start, int end, OutputStream out, byte[] tmp)
+            throws IOException {
+        while (start < end) {
+            int n = Math.min(tmp.length, end - start);
+            map.get(start, tmp, 0, n);
+            out.write(tmp, 0, n);
+            start += n;
+        }
+    }
+}
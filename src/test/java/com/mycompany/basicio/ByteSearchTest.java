@@ -0,0 +1,234 @@
+/*
+ByteSearch claims to be exact for every byte value, so each of its methods
+is checked against the loop it replaces, one byte at a time: on every single
+byte set, on sets large enough to need the arrays of extra tests, on bytes
+of 0x80 and above, in buffers of both byte orders, heap, direct and mapped,
+and between offsets that are not multiples of eight.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author david
+ */
+public class ByteSearchTest {
+
+    private final SplittableRandom random = new SplittableRandom(49);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void everySingleByteSet() {
+        for (int b = 0; b < 256; ++b) {
+            byte[] set = {(byte) b};
+            for (int round = 0; round < 20; ++round) {
+                checkAll(set, buffer(set, 1 + random.nextInt(80), round % 2 == 0));
+            }
+        }
+    }
+
+    /* More than three single bytes and more than two ranges. */
+    @Test
+    public void setsBeyondTheFields() {
+        byte[] many = {1, 5, 9, 13, 17, 21, 'a', 'b', 'c', 'x', 'y', 'z',
+            '0', '1', '2', '3', (byte) 0x80, (byte) 0xC3, (byte) 0xFF};
+        byte[] ranges = {'A', 'B', 'C', 'a', 'b', 'c', '0', '1', '2', '{', '|', '}', ';'};
+        for (byte[] set : new byte[][] {many, ranges}) {
+            for (int round = 0; round < 2000; ++round) {
+                checkAll(set, buffer(set, 1 + random.nextInt(200), round % 2 == 0));
+            }
+        }
+    }
+
+    @Test
+    public void randomSets() {
+        for (int round = 0; round < 5000; ++round) {
+            byte[] set = new byte[random.nextInt(1, 40)];
+            int base = random.nextInt(256);
+            for (int i = 0; i < set.length; ++i) {
+                // near one another, so that some of them form ranges
+                set[i] = (byte) (random.nextBoolean() ? base + random.nextInt(16)
+                        : random.nextInt(256));
+            }
+            checkAll(set, buffer(set, 1 + random.nextInt(200), round % 2 == 0));
+        }
+    }
+
+    @Test
+    public void constantsMatchTheirDefinitions() {
+        for (int b = 0; b < 256; ++b) {
+            assertEquals(b == '\n', ByteSearch.NEWLINE.contains((byte) b));
+            assertEquals(b == '\n' || b == '\r', ByteSearch.LINE_ENDS.contains((byte) b));
+            assertEquals(Character.isWhitespace(b) && b < 0x80,
+                    ByteSearch.WHITESPACE.contains((byte) b), Integer.toString(b));
+        }
+        byte[] ws = "\t\n\u000B\f\r\u001C\u001D\u001E\u001F ".getBytes(
+                StandardCharsets.ISO_8859_1);
+        for (int round = 0; round < 2000; ++round) {
+            checkAll(ws, buffer(ws, 1 + random.nextInt(200), round % 2 == 0));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ByteSearch.of("Ā"));
+    }
+
+    @Test
+    public void mappedBuffers() throws IOException {
+        byte[] set = "\r\n ".getBytes(StandardCharsets.US_ASCII);
+        Path file = dir.resolve("data");
+        for (int round = 0; round < 50; ++round) {
+            ByteBuffer data = buffer(set, 1 + random.nextInt(300), true);
+            byte[] bytes = new byte[data.limit()];
+            data.get(0, bytes);
+            Files.write(file, bytes);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                checkAll(set, map);
+            }
+        }
+    }
+
+    /*
+    A \r\n at every position of a buffer, inside a word, across two words
+    and across the last word and the bytes after it, counted from every
+    start and end.
+    */
+    @Test
+    public void countLinesOnEveryCrLfPosition() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            for (int p = 0; p < 39; ++p) {
+                ByteBuffer buf = ByteBuffer.allocate(40).order(order);
+                for (int i = 0; i < 40; ++i) {
+                    buf.put(i, (byte) 'x');
+                }
+                buf.put(p, (byte) '\r').put(p + 1, (byte) '\n');
+                if (p + 9 < 40) {
+                    // a lone \r and a lone \n as well
+                    buf.put(p + 5, (byte) '\n').put(p + 9, (byte) '\r');
+                }
+                for (int from = 0; from <= 16; ++from) {
+                    for (int to = from; to <= 40; ++to) {
+                        assertEquals(countLines(buf, from, to), ByteSearch.countLines(buf, from, to),
+                                order + " \\r\\n at " + p + " in [" + from + ", " + to + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkAll(byte[] set, ByteBuffer buf) {
+        ByteSearch search = new ByteSearch(set);
+        boolean[] member = new boolean[256];
+        for (byte b : set) {
+            member[b & 0xFF] = true;
+        }
+        for (int b = 0; b < 256; ++b) {
+            assertEquals(member[b], search.contains((byte) b));
+        }
+        for (int round = 0; round < 8; ++round) {
+            int from = random.nextInt(buf.limit() + 1);
+            int to = from + random.nextInt(buf.limit() - from + 1);
+            String where = buf.order() + (buf.isDirect() ? " direct" : " heap")
+                    + " [" + from + ", " + to + ") of " + bytes(set);
+            assertEquals(indexIn(member, buf, from, to), search.indexIn(buf, from, to), where);
+            assertEquals(indexNotIn(member, buf, from, to), search.indexNotIn(buf, from, to), where);
+            assertEquals(lastIndexIn(member, buf, from, to), search.lastIndexIn(buf, from, to), where);
+            assertEquals(count(member, buf, from, to), search.count(buf, from, to), where);
+            assertEquals(countLines(buf, from, to), ByteSearch.countLines(buf, from, to), where);
+        }
+    }
+
+    /*
+    Mostly bytes of the set, line ends and neighbours of the set, which
+    are the bytes most likely to be confused with them, in a buffer of
+    random order, heap or direct.
+    */
+    private ByteBuffer buffer(byte[] set, int length, boolean direct) {
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        buf.order(random.nextBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        // runs without any match, so that whole words are skipped as well
+        int density = random.nextInt(1, 64);
+        for (int i = 0; i < length; ++i) {
+            int b = switch (random.nextInt(density + 3)) {
+                case 0 -> set[random.nextInt(set.length)];
+                case 1 -> set[random.nextInt(set.length)] + (random.nextBoolean() ? 1 : -1);
+                case 2 -> random.nextBoolean() ? '\r' : '\n';
+                default -> random.nextInt(256);
+            };
+            buf.put(i, (byte) b);
+        }
+        return buf;
+    }
+
+    private static int indexIn(boolean[] member, ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexNotIn(boolean[] member, ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (!member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexIn(boolean[] member, ByteBuffer buf, int from, int to) {
+        for (int i = to - 1; i >= from; --i) {
+            if (member[buf.get(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long count(boolean[] member, ByteBuffer buf, int from, int to) {
+        long n = 0;
+        for (int i = from; i < to; ++i) {
+            if (member[buf.get(i) & 0xFF]) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    /* \n, \r and \r\n each end a line; a \r before from is not seen */
+    private static long countLines(ByteBuffer buf, int from, int to) {
+        long n = 0;
+        for (int i = from; i < to; ++i) {
+            byte b = buf.get(i);
+            if (b == '\r' || (b == '\n' && !(i > from && buf.get(i - 1) == '\r'))) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    private static String bytes(byte[] set) {
+        StringBuilder sb = new StringBuilder("{");
+        for (byte b : set) {
+            sb.append(' ').append(b & 0xFF);
+        }
+        return sb.append(" }").toString();
+    }
+}
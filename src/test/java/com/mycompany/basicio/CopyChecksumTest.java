@@ -0,0 +1,209 @@
+/*
+Every copy strategy has to report the same checksums for the same bytes,
+although each computes them from pieces of its own size. The CRC32C that
+combine builds from pieces is compared with java.util.zip.CRC32C over the
+whole, and the tree hash with the SHA-256 of the chunk digests, computed here
+without CopyChecksum.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author david
+ */
+public class CopyChecksumTest {
+
+    static final int CHUNK = (int) CopyChecksum.CHUNK;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void combineMatchesCrcOfTheWhole() {
+        SplittableRandom random = new SplittableRandom(52);
+        byte[] data = new byte[1 << 16];
+        random.nextBytes(data);
+        for (int round = 0; round < 2000; ++round) {
+            int lenA = random.nextInt(data.length + 1);
+            // a third of the time, B is empty or all of the data
+            int lenB = switch (round % 6) {
+                case 0 -> 0;
+                case 1 -> data.length - lenA;
+                default -> random.nextInt(data.length - lenA + 1);
+            };
+            int expected = crc(data, 0, lenA + lenB);
+            int combined = CopyChecksum.combine(crc(data, 0, lenA), crc(data, lenA, lenB), lenB);
+            assertEquals(expected, combined, lenA + " + " + lenB);
+
+            CopyChecksum a = new CopyChecksum(false);
+            a.update(data, 0, lenA);
+            CopyChecksum b = new CopyChecksum(false);
+            b.update(data, lenA, lenB);
+            a.append(b);
+            assertEquals(expected, a.crc32c(), lenA + " + " + lenB);
+            assertEquals(lenA + lenB, a.length());
+        }
+    }
+
+    /* B of more than 2^32 zero bytes, whose length does not fit in an int */
+    @Test
+    public void combineTakesLengthsBeyondAnInt() {
+        byte[] a = "In Xanadu did Kubla Khan".getBytes(StandardCharsets.US_ASCII);
+        long lenB = (1L << 32) + 12345;
+        ByteBuffer zeros = ByteBuffer.allocateDirect(1 << 20);
+        CRC32C whole = new CRC32C();
+        CRC32C b = new CRC32C();
+        whole.update(a);
+        for (long left = lenB; left > 0; left -= zeros.limit()) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), left));
+            whole.update(zeros.duplicate());
+            b.update(zeros);
+        }
+        assertEquals((int) whole.getValue(),
+                CopyChecksum.combine(crc(a, 0, a.length), (int) b.getValue(), lenB));
+    }
+
+    /*
+    STREAM copies a byte per system call, which takes minutes for sizes
+    around CHUNK, so there its checksum path, wrap(OutputStream) written one
+    byte at a time, runs without the file.
+    */
+    @Test
+    public void strategiesReportTheSameAroundChunks() throws IOException {
+        SplittableRandom random = new SplittableRandom(53);
+        Path source = dir.resolve("source");
+        Path target = dir.resolve("target");
+        for (int size : new int[] {0, 1, 4097, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK + 4097}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            Files.write(source, data);
+            String expected = "crc32c=" + String.format("%08x", crc(data, 0, size))
+                    + " sha256-tree=" + treeHash(data) + " " + target;
+            for (IoStrategy strategy : IoStrategy.values()) {
+                CopyChecksum sums = new CopyChecksum(true);
+                if (strategy == IoStrategy.STREAM && size > 4097) {
+                    OutputStream out = sums.wrap(OutputStream.nullOutputStream());
+                    for (byte b : data) {
+                        out.write(b);
+                    }
+                } else {
+                    CopyEngine.copy(source, target, strategy, sums);
+                    assertDoesNotThrow(() -> sums.verify(target), strategy + " " + size);
+                }
+                assertEquals(size, sums.length(), strategy + " " + size);
+                assertEquals(expected, sums.report(target), strategy + " " + size);
+            }
+        }
+    }
+
+    @Test
+    public void appendRejectsPiecesThatAreNotWholeChunks() {
+        byte[] chunk = new byte[CHUNK];
+        new SplittableRandom(54).nextBytes(chunk);
+
+        // this one does not end on a chunk boundary
+        CopyChecksum partial = new CopyChecksum(true);
+        partial.update(chunk, 0, 10);
+        assertThrows(IllegalArgumentException.class, () -> partial.append(piece(chunk, 0, 10)));
+
+        // the next piece is more than a chunk
+        CopyChecksum large = new CopyChecksum(true);
+        CopyChecksum tooLong = piece(chunk, 0, CHUNK);
+        tooLong.update(chunk, 0, 1);
+        assertThrows(IllegalArgumentException.class, () -> large.append(tooLong));
+
+        // a short piece ends the data
+        CopyChecksum ended = new CopyChecksum(true);
+        ended.append(piece(chunk, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> ended.append(piece(chunk, 0, 10)));
+
+        // whole chunks, then a short last piece, as the same bytes in one go
+        CopyChecksum pieces = new CopyChecksum(true);
+        pieces.append(piece(chunk, 0, CHUNK));
+        pieces.append(piece(chunk, 0, CHUNK));
+        pieces.append(piece(chunk, 0, 7));
+        CopyChecksum whole = new CopyChecksum(true);
+        whole.update(chunk, 0, CHUNK);
+        whole.update(chunk, 0, CHUNK);
+        whole.update(chunk, 0, 7);
+        assertEquals(whole.crc32c(), pieces.crc32c());
+        assertArrayEquals(whole.sha256(), pieces.sha256());
+
+        // without SHA-256 any piece will do
+        CopyChecksum crcOnly = new CopyChecksum(false);
+        crcOnly.update(chunk, 0, 10);
+        assertDoesNotThrow(() -> crcOnly.append(piece(chunk, 0, 10)));
+    }
+
+    @Test
+    public void verifyFailsWhenTheTargetDiffers() throws IOException {
+        byte[] data = new byte[3 * 4096 + 100];
+        new SplittableRandom(55).nextBytes(data);
+        Path source = dir.resolve("source");
+        Path target = dir.resolve("target");
+        Files.write(source, data);
+        for (boolean sha256 : new boolean[] {false, true}) {
+            CopyChecksum sums = new CopyChecksum(sha256);
+            CopyEngine.copy(source, target, IoStrategy.BUFFERED, sums);
+            sums.verify(target);
+
+            // one bit flipped
+            try (FileChannel ch = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.wrap(new byte[] {(byte) (data[5000] ^ 1)}), 5000);
+            }
+            assertThrows(IOException.class, () -> sums.verify(target));
+
+            // a byte short
+            Files.write(target, Arrays.copyOf(data, data.length - 1));
+            assertThrows(IOException.class, () -> sums.verify(target));
+        }
+    }
+
+    private static CopyChecksum piece(byte[] b, int off, int len) {
+        CopyChecksum sums = new CopyChecksum(true);
+        sums.update(b, off, len);
+        return sums;
+    }
+
+    private static int crc(byte[] b, int off, int len) {
+        CRC32C crc = new CRC32C();
+        crc.update(b, off, len);
+        return (int) crc.getValue();
+    }
+
+    private static String treeHash(byte[] data) {
+        try {
+            MessageDigest leaf = MessageDigest.getInstance("SHA-256");
+            MessageDigest root = MessageDigest.getInstance("SHA-256");
+            for (int off = 0; off < data.length; off += CHUNK) {
+                leaf.update(data, off, Math.min(CHUNK, data.length - off));
+                root.update(leaf.digest());
+            }
+            return HexFormat.of().formatHex(root.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+The dictionary-encoded format must give back exactly what DataStreamsDemo
+wrote, so a file is encoded and decoded and compared byte for byte. Varints
+are checked at the edges of their lengths, and on the inputs a reader must
+refuse: bits beyond the 32 of an int, negative values and a sixth byte.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author david
+ */
+public class DictionaryInvoiceFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void varintsRoundTrip() throws IOException {
+        int[][] values = {
+            {0, 1}, {127, 1}, {128, 2}, {16383, 2}, {16384, 3},
+            {(1 << 21) - 1, 3}, {1 << 21, 4}, {(1 << 28) - 1, 4}, {1 << 28, 5},
+            {Integer.MAX_VALUE, 5},
+        };
+        for (int[] value : values) {
+            byte[] bytes = varint(value[0]);
+            assertEquals(value[1], bytes.length, Integer.toString(value[0]));
+            assertEquals(value[0], readVarint(bytes), Integer.toString(value[0]));
+        }
+        SplittableRandom random = new SplittableRandom(51);
+        for (int i = 0; i < 100_000; ++i) {
+            int v = random.nextInt() >>> 1 >>> random.nextInt(31);
+            assertEquals(v, readVarint(varint(v)));
+        }
+    }
+
+    @Test
+    public void malformedVarintsAreRejected() {
+        String[] malformed = {
+            "8080808010",   // a bit beyond the 32 of an int
+            "ffffffff08",   // the sign bit: a negative index
+            "ffffffff0f",
+            "808080808000", // a sixth byte
+            "ffffffffff7f",
+            "80",           // cut short
+        };
+        for (String hex : malformed) {
+            byte[] bytes = HexFormat.of().parseHex(hex);
+            assertThrows(IOException.class, () -> readVarint(bytes), hex);
+        }
+        assertThrows(IOException.class, () -> readVarint(varint(-1)));
+        assertThrows(IOException.class, () -> readVarint(varint(Integer.MIN_VALUE)));
+    }
+
+    /* invoice encode, then invoice decode, gives back the same bytes */
+    @Test
+    public void encodeThenDecodeGivesBackTheFile() throws IOException {
+        Path original = dir.resolve("invoices.dat");
+        Path encoded = dir.resolve("invoices.invd");
+        Path decoded = dir.resolve("decoded.dat");
+        FixtureGenerator.writeInvoices(original, 50_000);
+        InvoiceCommands.encode(original, encoded, IoStrategy.BUFFERED);
+        assertTrue(DictionaryInvoiceFormat.isDictionaryFile(encoded));
+        InvoiceCommands.decode(encoded, decoded, IoStrategy.BUFFERED);
+        assertArrayEquals(Files.readAllBytes(original), Files.readAllBytes(decoded));
+
+        // more than 128 products, so some indexes take two bytes
+        InvoiceTable table = InvoiceTable.read(encoded);
+        assertTrue(table.descriptionCount() > 128);
+        assertEquals(50_000, table.size());
+    }
+
+    @Test
+    public void recordsOfOneProductShareTheirString() throws IOException {
+        Path original = dir.resolve("invoices.dat");
+        Path encoded = dir.resolve("invoices.invd");
+        FixtureGenerator.writeInvoices(original, 20_000);
+        InvoiceCommands.encode(original, encoded, IoStrategy.BUFFERED);
+
+        Map<String, String> first = new HashMap<>();
+        long[] records = {0};
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(encoded))) {
+            DictionaryInvoiceFormat.read(in, (price, units, desc) -> {
+                assertSame(first.computeIfAbsent(desc, d -> desc), desc, desc);
+                ++records[0];
+            });
+        }
+        assertEquals(20_000, records[0]);
+
+        Map<String, String> firstInTable = new HashMap<>();
+        InvoiceTable table = InvoiceTable.read(encoded);
+        for (long row = 0; row < table.size(); ++row) {
+            String desc = table.description(row);
+            assertSame(firstInTable.computeIfAbsent(desc, d -> desc), desc, desc);
+        }
+        assertEquals(first.keySet(), firstInTable.keySet());
+    }
+
+    private static byte[] varint(int v) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DictionaryInvoiceFormat.writeVarint(new DataOutputStream(bytes), v);
+        return bytes.toByteArray();
+    }
+
+    /* reads one varint, which must be all of the bytes */
+    private static int readVarint(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int v = DictionaryInvoiceFormat.readVarint(in);
+        assertEquals(0, in.available(), "bytes left after the varint");
+        return v;
+    }
+}
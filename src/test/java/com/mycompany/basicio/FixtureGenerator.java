@@ -0,0 +1,274 @@
+/*
+Test Data at Scale
+
+The sample files of the lesson are tiny: xanadu.txt is five lines,
+usnumbers.txt four numbers, invoicedata a handful of records. They show what
+the programs do, not how fast they do it. FixtureGenerator writes larger
+files of the same kinds:
+
+    text.txt       prose-like lines of words from a fixed vocabulary, some
+                   empty, most 40 to 100 characters long, like a book
+    numbers.txt    numbers as ScanSum reads them, with thousands separators,
+                   fractions and signs, mixed with words and badly grouped
+                   numbers such as "3,2767" that Scanner does not take
+    invoices.dat   records in the format of DataStreamsDemo, prices and
+                   units drawn for a catalogue of a few thousand products
+
+    java -cp target/test-classes:target/classes \
+            com.mycompany.basicio.FixtureGenerator \
+            target/fixtures --text 2g --numbers 256m --invoices 10000000
+
+Sizes take a k, m or g suffix. The files depend only on the sizes asked for:
+every file has its own random generator with a fixed seed, so the same
+command writes the same bytes on any machine, and a performance regression
+can be told apart from a change in the data.
+*/
+package com.mycompany.basicio;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ *
+ * @author david
+ */
+public class FixtureGenerator {
+
+    static final String TEXT = "text.txt";
+    static final String NUMBERS = "numbers.txt";
+    static final String INVOICES = "invoices.dat";
+
+    static final long DEFAULT_TEXT = 256L << 20;
+    static final long DEFAULT_NUMBERS = 16L << 20;
+    static final long DEFAULT_INVOICES = 2_000_000;
+
+    static final long TEXT_SEED = 0x5EED_7E47L;
+    static final long NUMBERS_SEED = 0x5EED_0123L;
+    static final long INVOICES_SEED = 0x5EED_1A7EL;
+
+    static final String[] WORDS = (
+            "In Xanadu did Kubla Khan A stately pleasure-dome decree Where Alph "
+            + "the sacred river ran Through caverns measureless to man Down to a "
+            + "sunless sea So twice five miles of fertile ground With walls and "
+            + "towers were girdled round And there were gardens bright with "
+            + "sinuous rills Where blossomed many an incense-bearing tree And here "
+            + "forests ancient as the hills Enfolding sunny spots of greenery But "
+            + "oh! that deep romantic chasm which slanted Down the green hill "
+            + "athwart a cedarn cover A savage place as holy and enchanted As e'er "
+            + "beneath a waning moon was haunted By woman wailing for her "
+            + "demon-lover").split(" ");
+
+    static final String[] PRODUCTS = {
+        "T-shirt", "Mug", "Duke Juggling Dolls", "Pin", "Key Chain", "Cap",
+        "Hoodie", "Sticker", "Notebook", "Pen", "Backpack", "Water Bottle",
+        "Lanyard", "Socks", "Umbrella", "Poster", "Mouse Pad", "Scarf",
+    };
+
+    static final String[] BRANDS = {
+        "Java", "Duke", "Coffee", "Cup", "Bean", "Applet", "Servlet", "Lambda",
+        "Stream", "Record", "Module", "Vector", "Loom", "Panama", "Valhalla",
+        "Amber", "Leyden", "Babylon", "Lilliput", "Graal",
+    };
+
+    static final String[] SIZES = {"", " S", " M", " L", " XL", " XXL"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 != 1) {
+            usage();
+        }
+        Path dir = Path.of(args[0]);
+        long text = DEFAULT_TEXT;
+        long numbers = DEFAULT_NUMBERS;
+        long invoices = DEFAULT_INVOICES;
+        for (int i = 1; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--text" -> text = parseSize(args[i + 1]);
+                case "--numbers" -> numbers = parseSize(args[i + 1]);
+                case "--invoices" -> invoices = parseSize(args[i + 1]);
+                default -> usage();
+            }
+        }
+        Files.createDirectories(dir);
+        writeText(dir.resolve(TEXT), text);
+        writeNumbers(dir.resolve(NUMBERS), numbers);
+        writeInvoices(dir.resolve(INVOICES), invoices);
+    }
+
+    private static void usage() {
+        System.err.println("usage: FixtureGenerator DIR [--text SIZE] [--numbers SIZE] "
+                + "[--invoices COUNT]");
+        System.exit(2);
+    }
+
+    /* 1500, 64k, 512m or 2g; k, m and g are powers of 1024. */
+    static long parseSize(String size) {
+        String s = size.toLowerCase(Locale.ROOT).replace("_", "");
+        int shift = switch (s.isEmpty() ? ' ' : s.charAt(s.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        if (shift != 0) {
+            s = s.substring(0, s.length() - 1);
+        }
+        try {
+            return Long.parseLong(s) << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a size: " + size);
+        }
+    }
+
+    /*
+    Lines of words until the file holds size bytes, cut at the end of a line,
+    so a file is never larger than asked for. About one line in twelve is
+    empty, like the breaks between paragraphs.
+    */
+    static void writeText(Path target, long size) throws IOException {
+        SplittableRandom random = new SplittableRandom(TEXT_SEED);
+        byte[][] words = ascii(WORDS);
+        byte[] line = new byte[256];
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(target.toFile()), CopyEngine.BUFFER_SIZE)) {
+            long written = 0;
+            while (true) {
+                int n = 0;
+                if (random.nextInt(12) != 0) {
+                    int length = 40 + random.nextInt(61);
+                    while (n < length) {
+                        byte[] word = words[skewed(random, words.length)];
+                        if (n + word.length + 1 >= line.length) {
+                            break;
+                        }
+                        if (n > 0) {
+                            line[n++] = ' ';
+                        }
+                        System.arraycopy(word, 0, line, n, word.length);
+                        n += word.length;
+                    }
+                }
+                line[n++] = '\n';
+                if (written + n > size) {
+                    break;
+                }
+                out.write(line, 0, n);
+                written += n;
+            }
+        }
+    }
+
+    /*
+    Tokens separated by spaces, ten or so to a line. Most are numbers in the
+    forms ScanSum accepts in Locale.US; one in ten is a word or a number with
+    its separators in the wrong places.
+    */
+    static void writeNumbers(Path target, long size) throws IOException {
+        SplittableRandom random = new SplittableRandom(NUMBERS_SEED);
+        NumberText text = new NumberText();
+        byte[][] words = ascii(WORDS);
+        byte[] token = new byte[64];
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(target.toFile()), CopyEngine.BUFFER_SIZE)) {
+            long written = 0;
+            int column = 0;
+            while (true) {
+                int n = 0;
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    byte[] word = words[random.nextInt(words.length)];
+                    System.arraycopy(word, 0, token, 0, word.length);
+                    n = word.length;
+                } else if (kind == 1) {
+                    // digits with a separator after the first, like 3,2767
+                    n = text.writeInt(1 + random.nextInt(9), token, 0);
+                    token[n++] = ',';
+                    n = text.writeInt(1000 + random.nextInt(9000), token, n);
+                } else {
+                    if (random.nextInt(8) == 0) {
+                        token[n++] = '-';
+                    }
+                    n = grouped(random.nextLong(kind < 5 ? 1000 : 1_000_000_000L), token, n, text);
+                    if (kind >= 5) {
+                        token[n++] = '.';
+                        n = text.writeInt(random.nextInt(10), token, n);
+                        for (int digits = random.nextInt(5); digits > 0; --digits) {
+                            token[n++] = (byte) ('0' + random.nextInt(10));
+                        }
+                    }
+                }
+                token[n++] = ++column % 10 == 0 ? (byte) '\n' : (byte) ' ';
+                if (written + n > size) {
+                    break;
+                }
+                out.write(token, 0, n);
+                written += n;
+            }
+        }
+    }
+
+    /* value with a comma between each group of three digits */
+    private static int grouped(long value, byte[] buf, int n, NumberText text) {
+        if (value < 1000) {
+            return text.writeLong(value, buf, n);
+        }
+        n = grouped(value / 1000, buf, n, text);
+        buf[n++] = ',';
+        int group = (int) (value % 1000);
+        buf[n++] = (byte) ('0' + group / 100);
+        buf[n++] = (byte) ('0' + group / 10 % 10);
+        buf[n++] = (byte) ('0' + group % 10);
+        return n;
+    }
+
+    /*
+    Records of price, units and description, as DataStreamsDemo writes them.
+    The catalogue is every brand, product and size combination, a couple of
+    thousand descriptions, each with its own price; popular products are
+    ordered more often, and most orders are for a few units.
+    */
+    static void writeInvoices(Path target, long records) throws IOException {
+        SplittableRandom random = new SplittableRandom(INVOICES_SEED);
+        String[] catalogue = new String[BRANDS.length * PRODUCTS.length * SIZES.length];
+        double[] prices = new double[catalogue.length];
+        int c = 0;
+        for (String brand : BRANDS) {
+            for (String product : PRODUCTS) {
+                for (String size : SIZES) {
+                    catalogue[c] = brand.concat(" ").concat(product).concat(size);
+                    prices[c++] = (99 + random.nextInt(9900)) / 100.0;
+                }
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(target.toFile()), CopyEngine.BUFFER_SIZE))) {
+            for (long r = 0; r < records; ++r) {
+                int item = skewed(random, catalogue.length);
+                out.writeDouble(prices[item]);
+                out.writeInt(1 + skewed(random, 50));
+                out.writeUTF(catalogue[item]);
+            }
+        }
+    }
+
+    /* an index below n, low indexes much more likely than high ones */
+    private static int skewed(SplittableRandom random, int n) {
+        double u = random.nextDouble();
+        return (int) (u * u * n);
+    }
+
+    private static byte[][] ascii(String[] strings) {
+        byte[][] bytes = new byte[strings.length][];
+        for (int i = 0; i < strings.length; ++i) {
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+}
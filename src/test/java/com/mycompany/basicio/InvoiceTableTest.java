@@ -0,0 +1,128 @@
+/*
+The columns of InvoiceTable grow in chunks, and a chunk by doubling, so rows
+are appended across every size a chunk goes through and past the end of the
+first chunk, then read back one at a time, by scan and grouped, and compared
+with what was appended.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author david
+ */
+public class InvoiceTableTest {
+
+    static final String[] DESCS = {
+        "Java T-shirt", "Java Mug", "Duke Juggling Dolls", "Java Pin", "Java Key Chain",
+    };
+
+    static final int ROWS = InvoiceTable.CHUNK_ROWS + 3 * InvoiceTable.FIRST_CHUNK_ROWS + 7;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void appendScanAndTotalsAcrossChunks() throws IOException {
+        double[] prices = new double[ROWS];
+        int[] units = new int[ROWS];
+        int[] descIds = new int[ROWS];
+        InvoiceTable table = fill(prices, units, descIds);
+        assertEquals(ROWS, table.size());
+        assertEquals(DESCS.length, table.descriptionCount());
+
+        for (long row = 0; row < ROWS; ++row) {
+            int r = (int) row;
+            assertEquals(prices[r], table.price(row), "row " + row);
+            assertEquals(units[r], table.units(row), "row " + row);
+            assertEquals(DESCS[descIds[r]], table.description(row), "row " + row);
+        }
+
+        long[] visited = {0};
+        table.scan((price, unit, descId) -> {
+            int r = (int) visited[0]++;
+            assertEquals(prices[r], price, "row " + r);
+            assertEquals(units[r], unit, "row " + r);
+            assertEquals(DESCS[descIds[r]], table.dictionaryEntry(descId), "row " + r);
+        });
+        assertEquals(ROWS, visited[0]);
+
+        long[] expectedUnits = new long[DESCS.length];
+        double[] expectedAmounts = new double[DESCS.length];
+        for (int r = 0; r < ROWS; ++r) {
+            expectedUnits[descIds[r]] += units[r];
+            expectedAmounts[descIds[r]] += prices[r] * units[r];
+        }
+        assertTotals(expectedUnits, expectedAmounts, table);
+
+        Path file = dir.resolve("invoices.dat");
+        table.write(file);
+        InvoiceTable read = InvoiceTable.read(file);
+        assertEquals(ROWS, read.size());
+        assertTotals(expectedUnits, expectedAmounts, read);
+    }
+
+    /* Sizes up to the first doubling, up to the second and so on. */
+    @Test
+    public void smallTablesAroundEachDoubling() {
+        for (int size = InvoiceTable.FIRST_CHUNK_ROWS; size <= InvoiceTable.CHUNK_ROWS; size *= 2) {
+            for (int n : new int[] {0, 1, size - 1, size, size + 1}) {
+                InvoiceTable table = new InvoiceTable();
+                for (int r = 0; r < n; ++r) {
+                    table.append(r * 0.25, r, DESCS[r % DESCS.length]);
+                }
+                long[] count = {0};
+                table.scan((price, unit, descId) -> {
+                    assertEquals(count[0] * 0.25, price);
+                    assertEquals(count[0]++, unit);
+                });
+                assertEquals(n, count[0]);
+                if (n > 0) {
+                    assertEquals(n - 1, table.units(n - 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rowsOutsideTheTableAreRejected() {
+        InvoiceTable table = new InvoiceTable();
+        table.append(19.99, 12, DESCS[0]);
+        assertThrows(IndexOutOfBoundsException.class, () -> table.price(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.units(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> new InvoiceTable().description(0));
+    }
+
+    /* The expected totals are by index in DESCS, the table's by its own ids. */
+    private static void assertTotals(long[] expectedUnits, double[] expectedAmounts,
+            InvoiceTable table) {
+        long[] units = new long[table.descriptionCount()];
+        double[] amounts = new double[table.descriptionCount()];
+        table.totalsByDescription(units, amounts);
+        for (int d = 0; d < DESCS.length; ++d) {
+            int id = table.idOf(DESCS[d]);
+            assertEquals(expectedUnits[d], units[id], DESCS[d]);
+            assertEquals(expectedAmounts[d], amounts[id], DESCS[d]);
+        }
+    }
+
+    private static InvoiceTable fill(double[] prices, int[] units, int[] descIds) {
+        SplittableRandom random = new SplittableRandom(50);
+        InvoiceTable table = new InvoiceTable();
+        for (int r = 0; r < prices.length; ++r) {
+            prices[r] = random.nextInt(1, 100_000) / 100.0;
+            units[r] = random.nextInt(1, 1000);
+            descIds[r] = random.nextInt(DESCS.length);
+            assertEquals(r, table.append(prices[r], units[r], DESCS[descIds[r]]));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+NumberText promises the exact text of Double.toString and of %.Nf, so it is
+tested against them: the same values go through both, and the results must
+be equal character for character. The values are the edge cases of the two
+algorithms, then random bit patterns, which cover every exponent, then
+random values of the sizes a report prints.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author david
+ */
+public class NumberTextTest {
+
+    static final double[] EDGES = {
+        0.0, -0.0, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE,
+        -Double.MAX_VALUE, Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL),
+        1e23, 2e23, 8.41e21, 5e-324, 1e-323, 2e-3, 1e-3, 1e-4, 1e7, 9999999.0,
+        9999999.999, 1e16, 1e22, 1.0, 100.0, 123456789012345678.0, 1e300,
+        // halfway in decimal, but not in binary, and the other way round
+        0.15, 0.25, 0.35, 2.5, 0.125, 1.5, -2.5, 9.5, 0.05, 0.995, 1.005,
+        4.35, 0.3, 1.0E-5, 0.5, 0.045, 1.115, 2.675,
+        Math.PI, Math.E, Math.sqrt(2), Math.sqrt(5), 1 / 3.0, 2 / 3.0,
+    };
+
+    static final double[] SPECIALS = {
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+    };
+
+    private final NumberText text = new NumberText();
+    private final byte[] bytes = new byte[400];
+    private final char[] chars = new char[400];
+
+    @Test
+    public void writeDoubleMatchesToStringOnEdgeCases() {
+        for (double v : EDGES) {
+            assertDouble(v);
+        }
+        for (double v : SPECIALS) {
+            assertDouble(v);
+        }
+    }
+
+    @Test
+    public void writeDoubleMatchesToStringOnRandomBits() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 500_000; ++i) {
+            assertDouble(Double.longBitsToDouble(random.nextLong()));
+        }
+    }
+
+    @Test
+    public void writeDoubleMatchesToStringOnPrices() {
+        SplittableRandom random = new SplittableRandom(43);
+        for (int i = 0; i < 200_000; ++i) {
+            assertDouble(random.nextInt(-1_000_000, 1_000_000) / 100.0);
+            assertDouble(random.nextDouble() * Math.pow(10, random.nextInt(-10, 20)));
+            assertDouble((float) random.nextDouble());
+        }
+    }
+
+    @Test
+    public void writeFixedMatchesFormatOnEdgeCases() {
+        for (int precision = 0; precision <= 39; ++precision) {
+            for (double v : EDGES) {
+                assertFixed(v, precision);
+            }
+        }
+    }
+
+    @Test
+    public void writeFixedMatchesFormatOnRandomValues() {
+        SplittableRandom random = new SplittableRandom(44);
+        for (int precision = 0; precision <= 39; ++precision) {
+            for (int i = 0; i < 5_000; ++i) {
+                assertFixed(Double.longBitsToDouble(random.nextLong()), precision);
+                assertFixed(random.nextInt(-1_000_000, 1_000_000) / 1000.0, precision);
+                assertFixed(random.nextDouble() * Math.pow(10, random.nextInt(-20, 25)), precision);
+            }
+        }
+    }
+
+    @Test
+    public void writeFixedMatchesFormatWithFlagsAndWidth() {
+        SplittableRandom random = new SplittableRandom(45);
+        for (double v : EDGES) {
+            assertPadded(v, 10, 20);
+        }
+        for (int i = 0; i < 100_000; ++i) {
+            assertPadded(random.nextDouble() * Math.pow(10, random.nextInt(-5, 12))
+                    * (random.nextBoolean() ? 1 : -1), 10, 20);
+            assertPadded(Double.longBitsToDouble(random.nextLong()), 10, 20);
+        }
+        assertEquals("+00000003.1415926536", fixed(Math.PI, 10, true, 20));
+    }
+
+    @Test
+    public void writeFixedPadsSpecialsWithBlanks() {
+        for (double v : SPECIALS) {
+            for (int precision : new int[] {0, 6, 10}) {
+                assertFixed(v, precision);
+                for (int width : new int[] {0, 3, 9, 12, 20}) {
+                    assertPadded(v, precision, width);
+                }
+            }
+        }
+        assertEquals("           +Infinity", fixed(Double.POSITIVE_INFINITY, 10, true, 20));
+        assertEquals("                 NaN", fixed(Double.NaN, 10, true, 20));
+    }
+
+    @Test
+    public void writeFixedRejectsNegativePrecision() {
+        assertThrows(IllegalArgumentException.class, () -> text.writeFixed(1.0, -1, bytes, 0));
+    }
+
+    @Test
+    public void writeIntegersMatchToString() {
+        for (long v : new long[] {0, 1, -1, 9, 10, 99, 100, 1_000_000_000_000_000_000L,
+                Long.MIN_VALUE, Long.MAX_VALUE}) {
+            assertEquals(Long.toString(v), new String(bytes, 0, text.writeLong(v, bytes, 0)));
+            assertEquals(Long.toString(v), new String(chars, 0, text.writeLong(v, chars, 0)));
+        }
+        for (int v : new int[] {0, -7, 12345, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            assertEquals(Integer.toString(v), new String(bytes, 0, text.writeInt(v, bytes, 0)));
+            assertEquals(Integer.toString(v), new String(chars, 0, text.writeInt(v, chars, 0)));
+        }
+        SplittableRandom random = new SplittableRandom(46);
+        for (int i = 0; i < 100_000; ++i) {
+            long v = random.nextLong() >> random.nextInt(64);
+            assertEquals(Long.toString(v), new String(bytes, 0, text.writeLong(v, bytes, 0)));
+        }
+    }
+
+    @Test
+    public void writesContinueAtTheOffset() {
+        int n = text.writeAscii("x=", bytes, 5);
+        n = text.writeDouble(0.1, bytes, n);
+        assertEquals(10, n);
+        assertEquals("x=0.1", new String(bytes, 5, n - 5));
+    }
+
+    private void assertDouble(double v) {
+        String expected = Double.toString(v);
+        String bits = Long.toHexString(Double.doubleToRawLongBits(v));
+        assertEquals(expected, new String(bytes, 0, text.writeDouble(v, bytes, 0)), bits);
+        assertEquals(expected, new String(chars, 0, text.writeDouble(v, chars, 0)), bits);
+    }
+
+    private void assertFixed(double v, int precision) {
+        String expected = String.format(Locale.ROOT, "%." + precision + "f", v);
+        String message = Double.toString(v) + " %." + precision + "f";
+        assertEquals(expected, new String(bytes, 0, text.writeFixed(v, precision, bytes, 0)),
+                message);
+        assertEquals(expected, new String(chars, 0, text.writeFixed(v, precision, chars, 0)),
+                message);
+    }
+
+    private void assertPadded(double v, int precision, int width) {
+        // Formatter wants a width with the 0 flag
+        String format = width == 0 ? "%+." + precision + "f" : "%+0" + width + "." + precision + "f";
+        String expected = String.format(Locale.ROOT, format, v);
+        assertEquals(expected, fixed(v, precision, true, width), Double.toString(v) + " " + format);
+    }
+
+    private String fixed(double v, int precision, boolean plus, int width) {
+        String b = new String(bytes, 0, text.writeFixed(v, precision, plus, width, bytes, 0));
+        String c = new String(chars, 0, text.writeFixed(v, precision, plus, width, chars, 0));
+        assertEquals(b, c);
+        return b;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+Performance Regression Suite
+
+PerfSuite runs the programs of the lesson, through BasicIO, on the files
+FixtureGenerator writes, and checks each run against two budgets:
+
+    allocation   bytes allocated on the heap, by all threads, per MB of
+                 input, plus a fixed allowance for buffers and the like.
+                 Allocation does not depend on the machine, so the budgets
+                 are part of the suite: a change that makes the mapped scan
+                 allocate per token, or copy-bytes per block, fails anywhere.
+    throughput   MB of input per second, the median of several runs after a
+                 warm-up run. Speed does depend on the machine, so it is
+                 compared with a baseline recorded on the same machine, and
+                 a case fails when it is slower than the baseline by more
+                 than the tolerance.
+
+    java -cp target/test-classes:target/classes com.mycompany.basicio.PerfSuite \
+            target/fixtures --save perf-baseline.properties
+    ... change something ...
+    java -cp target/test-classes:target/classes com.mycompany.basicio.PerfSuite \
+            target/fixtures --baseline perf-baseline.properties
+
+Without --baseline only the allocation budgets are checked. A --baseline file
+that does not exist is an error, not a pass: a suite that quietly skips the
+throughput check would never catch a slowdown. "mvn -Pperf verify" generates
+the fixtures in target/fixtures and runs the suite against
+perf-baseline.properties in the project directory; "mvn -Pperf verify
+-Dperf.action=--save" records that file on the machine at hand.
+
+The exit status is 1 when any case is over a budget. The programs run in this
+JVM, one after another, with their Standard Output thrown away and their
+output files written to an out directory next to the fixtures. The STREAM
+strategy is left out: a system call per byte takes minutes on these files,
+and it is the version the rest of the lesson is there to improve on.
+*/
+package com.mycompany.basicio;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ *
+ * @author david
+ */
+public class PerfSuite {
+
+    /*
+    One run of BasicIO. In args, IN stands for the fixture and OUT for a file
+    in the out directory. allocPerMB is the allocation budget per MB of
+    input, on top of ALLOC_ALLOWANCE.
+    */
+    record Case(String fixture, long allocPerMB, String... args) {
+
+        String name() {
+            return String.join(" ", args).replace(" IN", "").replace(" OUT", "")
+                    .replace("--strategy ", "");
+        }
+    }
+
+    static final long ALLOC_ALLOWANCE = 4L << 20;
+    static final double MB = 1e6;
+
+    static final String TEXT = FixtureGenerator.TEXT;
+    static final String NUMBERS = FixtureGenerator.NUMBERS;
+    static final String INVOICES = FixtureGenerator.INVOICES;
+
+    /*
+    The budgets are two to three times what each case allocates today. The
+    copies, counts and mapped scan allocate nothing per line or block; those
+    that create a String per line, token or record are budgeted for it, and
+    Scanner, with its regular expressions, for a lot more.
+    */
+    static final Case[] CASES = {
+        new Case(TEXT, 2_000, "copy-bytes", "--strategy", "buffered", "IN", "OUT"),
+        new Case(TEXT, 2_000, "copy-bytes", "--strategy", "channel", "IN", "OUT"),
+        new Case(TEXT, 2_000, "copy-bytes", "--strategy", "mmap", "IN", "OUT"),
+        new Case(TEXT, 2_000, "copy-bytes", "--strategy", "parallel", "IN", "OUT"),
+        new Case(TEXT, 4_000, "copy-bytes", "--strategy", "parallel", "--sha256", "IN", "OUT"),
+        new Case(TEXT, 8_000, "copy-chars", "--strategy", "buffered", "IN", "OUT"),
+        new Case(TEXT, 8_000, "copy-chars", "--strategy", "channel", "IN", "OUT"),
+        new Case(TEXT, 4_000_000, "copy-lines", "--strategy", "buffered", "IN", "OUT"),
+        new Case(TEXT, 2_000, "copy-lines", "--strategy", "mmap", "IN", "OUT"),
+        new Case(TEXT, 2_000, "count-lines", "--strategy", "buffered", "IN"),
+        new Case(TEXT, 2_000, "count-lines", "--strategy", "mmap", "IN"),
+        new Case(TEXT, 2_000, "scan", "--strategy", "mmap", "IN"),
+        new Case(NUMBERS, 800_000_000, "sum", "--strategy", "buffered", "IN"),
+        new Case(NUMBERS, 20_000_000, "sum", "--strategy", "mmap", "IN"),
+        new Case(INVOICES, 5_000_000, "invoice", "read", "--strategy", "buffered", "IN"),
+        new Case(INVOICES, 5_000_000, "invoice", "totals", "IN"),
+        new Case(INVOICES, 5_000_000, "invoice", "encode", "IN", "OUT"),
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage();
+        }
+        Path fixtures = Path.of(args[0]);
+        int runs = 3;
+        double tolerance = 0.25;
+        Path baseline = null;
+        Path save = null;
+        String only = "";
+        for (int i = 1; i < args.length; ++i) {
+            if (i + 1 == args.length) {
+                usage();
+            }
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--save" -> save = Path.of(args[++i]);
+                case "--only" -> only = args[++i];
+                default -> usage();
+            }
+        }
+
+        Properties expected = new Properties();
+        if (baseline != null && !Files.exists(baseline)) {
+            System.err.println("No baseline in " + baseline + ". Throughput depends on the "
+                    + "machine; record one on this machine with --save " + baseline
+                    + ", or mvn -Pperf verify -Dperf.action=--save");
+            System.exit(2);
+        }
+        if (baseline != null) {
+            try (InputStream in = new FileInputStream(baseline.toFile())) {
+                expected.load(in);
+            }
+        }
+        Properties measured = new Properties();
+        Path out = fixtures.resolve("out");
+        Files.createDirectories(out);
+
+        System.out.println(String.format(Locale.ROOT, "%-38s %9s %10s %10s %10s",
+                "case", "MB/s", "baseline", "alloc/MB", "budget"));
+        int failures = 0;
+        for (Case c : CASES) {
+            if (!c.name().startsWith(only)) {
+                continue;
+            }
+            Path input = fixtures.resolve(c.fixture());
+            double mb = Files.size(input) / MB;
+            String[] command = command(c, input, out.resolve(c.fixture()));
+
+            Result[] results = new Result[runs];
+            run(command);
+            for (int r = 0; r < runs; ++r) {
+                results[r] = run(command);
+            }
+            Arrays.sort(results, (a, b) -> Long.compare(a.nanos(), b.nanos()));
+            double mbps = mb / (results[runs / 2].nanos() / 1e9);
+            long allocated = Arrays.stream(results).mapToLong(Result::allocated).min().getAsLong();
+            // beyond the allowance, so that it compares with the budget as is
+            double allocPerMB = Math.max(0, allocated - ALLOC_ALLOWANCE) / mb;
+
+            String key = c.name().replace(' ', '.');
+            measured.setProperty(key, String.format(Locale.ROOT, "%.1f", mbps));
+            String base = expected.getProperty(key);
+            boolean slow = base != null && mbps < Double.parseDouble(base) * (1 - tolerance);
+            boolean heavy = allocPerMB > c.allocPerMB();
+            System.out.println(String.format(Locale.ROOT, "%-38s %9.1f %10s %10.0f %10d%s",
+                    c.name(), mbps, base == null ? "-" : base, allocPerMB, c.allocPerMB(),
+                    slow ? "  SLOWER" : heavy ? "  OVER BUDGET" : ""));
+            if (slow || heavy) {
+                ++failures;
+            }
+        }
+        try (var files = Files.newDirectoryStream(out)) {
+            for (Path p : files) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(out);
+
+        if (save != null) {
+            try (OutputStream o = new FileOutputStream(save.toFile())) {
+                measured.store(o, "PerfSuite baseline, MB/s per case");
+            }
+        }
+        if (failures > 0) {
+            System.out.println(failures + (failures == 1 ? " case" : " cases") + " over budget");
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: PerfSuite FIXTURES [--runs N] [--tolerance FRACTION] "
+                + "[--baseline FILE] [--save FILE] [--only PREFIX]");
+        System.exit(2);
+    }
+
+    private static String[] command(Case c, Path input, Path output) {
+        List<String> command = new ArrayList<>();
+        for (String arg : c.args()) {
+            command.add(switch (arg) {
+                case "IN" -> input.toString();
+                case "OUT" -> output.toString();
+                default -> arg;
+            });
+        }
+        return command.toArray(String[]::new);
+    }
+
+    record Result(long nanos, long allocated) {
+    }
+
+    /*
+    Runs one command with System.out discarded. Allocation is counted for all
+    threads, including those of the parallel strategy's pool, which are gone
+    by the time the command returns.
+    */
+    static Result run(String[] command) throws IOException {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            System.gc();
+            long allocated = threads.getTotalThreadAllocatedBytes();
+            long start = System.nanoTime();
+            BasicIO.run(command);
+            long nanos = System.nanoTime() - start;
+            return new Result(nanos, threads.getTotalThreadAllocatedBytes() - allocated);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+The strategies of a command must not change its result, only its speed. The
+mapped versions read bytes where the tutorial's programs read characters
+through a Reader and a Scanner, so each is compared with the BUFFERED
+version on the same file.
+*/
+package com.mycompany.basicio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author david
+ */
+public class TextCommandsTest {
+
+    static final String[] TOKENS = {
+        "8.5", "32,767", "3.14159", "1,000,000.1", "3,2767", "0,123", "-0,500",
+        "00,123", "1234,567", "1,2345", "1,000,", ",123", "1,000.", "1,000.5e3",
+        "NaN", "-NaN", "+NaN", "nan", "Infinity", "-Infinity", "+Infinity",
+        "∞", "-∞", "5.", ".5", ".", "+", "-", "1e", "1E+5", "1e-3",
+        "e5", "1d", "1f", "0x1.8p1", "-0x.8p0", "0X1.8P1", "0x1.8", "0x1p3",
+        "0x.p1", "١٢٣", "١,٢٣٤",
+        "٠,١٢٣", "1e٣", "１２", "1　2",
+        "café", "Xanadu", "-12.75", "+4", "007", "1_000",
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void sumMappedMatchesScannerOnEachToken() throws IOException {
+        for (String token : TOKENS) {
+            assertSameSum(token, token);
+        }
+    }
+
+    @Test
+    public void sumMappedMatchesScannerOnInfinityAndOne() throws IOException {
+        assertSameSum("Infinity 1", "Infinity 1");
+        assertEquals(Double.POSITIVE_INFINITY, sum("Infinity 1", IoStrategy.MMAP));
+    }
+
+    @Test
+    public void sumMappedMatchesScannerOnMixedText() throws IOException {
+        assertSameSum("all tokens", String.join(" \n\t", TOKENS));
+        Path numbers = dir.resolve("numbers.txt");
+        FixtureGenerator.writeNumbers(numbers, 1 << 20);
+        assertEquals(TextCommands.sum(numbers, IoStrategy.BUFFERED),
+                TextCommands.sum(numbers, IoStrategy.MMAP));
+    }
+
+    /*
+    Random tokens from the characters that matter to the grammar, each read
+    by a Scanner and by usDouble.
+    */
+    @Test
+    public void usDoubleMatchesScannerOnRandomTokens() {
+        String alphabet = "0123456789,,,..+-eExXpPaINf٠١٩";
+        SplittableRandom random = new SplittableRandom(47);
+        char[] number = new char[32];
+        for (int t = 0; t < 50_000; ++t) {
+            char[] token = new char[1 + random.nextInt(10)];
+            for (int i = 0; i < token.length; ++i) {
+                token[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            String s = new String(token);
+            Scanner scanner = new Scanner(s).useLocale(Locale.US);
+            Double expected = scanner.hasNextDouble() ? scanner.nextDouble() : null;
+            int n = TextCommands.usDouble(token, 0, token.length, number);
+            Double actual = n < 0 ? null : Double.parseDouble(new String(number, 0, n));
+            assertEquals(expected, actual, s);
+        }
+    }
+
+    /*
+    A Latin-1 é, a UTF-8 sequence cut short and random bytes, malformed in
+    every way and across buffer boundaries: every strategy replaces them the
+    same way, rather than one of them failing.
+    */
+    @Test
+    public void copyCharsStrategiesAgreeOnMalformedInput() throws IOException {
+        byte[] random = new byte[300_000];
+        new SplittableRandom(48).nextBytes(random);
+        byte[][] inputs = {
+            "caf\u00e9\n".getBytes(StandardCharsets.ISO_8859_1),
+            {'a', (byte) 0xE2, (byte) 0x88},
+            random,
+        };
+        for (byte[] input : inputs) {
+            Path source = dir.resolve("in.txt");
+            Files.write(source, input);
+            byte[] expected = null;
+            for (IoStrategy strategy : new IoStrategy[] {
+                IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.CHANNEL}) {
+                Path target = dir.resolve(strategy + ".txt");
+                TextCommands.copyChars(source, target, strategy);
+                byte[] actual = Files.readAllBytes(target);
+                if (expected == null) {
+                    expected = actual;
+                }
+                assertArrayEquals(expected, actual, strategy.toString());
+            }
+        }
+    }
+
+    /* /dev/full fails every write with ENOSPC, like a full disk. */
+    @Test
+    public void copyLinesReportsAFailedWrite() throws IOException {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full));
+        Path source = dir.resolve("in.txt");
+        Files.writeString(source, "In Xanadu did Kubla Khan\nA stately pleasure-dome decree\n");
+        for (IoStrategy strategy : new IoStrategy[] {
+            IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP}) {
+            assertThrows(IOException.class,
+                    () -> TextCommands.copyLines(source, full, strategy), strategy.toString());
+        }
+    }
+
+    @Test
+    public void scanReportsAFailedWrite() throws IOException {
+        Path source = dir.resolve("in.txt");
+        Files.writeString(source, "In Xanadu did Kubla Khan\n");
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        for (IoStrategy strategy : new IoStrategy[] {
+            IoStrategy.STREAM, IoStrategy.BUFFERED, IoStrategy.MMAP}) {
+            assertThrows(IOException.class,
+                    () -> TextCommands.scan(source, broken, strategy), strategy.toString());
+        }
+    }
+
+    private void assertSameSum(String message, String text) throws IOException {
+        assertEquals(sum(text, IoStrategy.BUFFERED), sum(text, IoStrategy.MMAP), message);
+    }
+
+    private double sum(String text, IoStrategy strategy) throws IOException {
+        Path file = dir.resolve("tokens.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return TextCommands.sum(file, strategy);
+    }
+}